@@ -0,0 +1,161 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the foraging world-gen plugins per generated chunk, against the synthetic world of {@link ForagingFixture}.
+ * <p>
+ * Every operation is one chunk: throughput is reported in chunks per second, sample time gives the per-chunk latency
+ * percentiles (p99 included). Run {@link #main} to get the allocation rate from the GC profiler as well. Before
+ * measuring, the trial setup verifies the placements against {@link GoldenHashCheck}, so a faster revision cannot
+ * silently change what gets generated.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForagingBenchmark {
+    /**
+     * Values of {@link ForagableFoodProvider.ForagableFoodDensityConfiguration#density}.
+     */
+    @Param({"0.05", "0.4", "1.0"})
+    public float density;
+
+    private ForagingFixture fixture;
+    private ForagableFoodProvider provider;
+    private ForagableFoodProvider evenProvider;
+    private ForagableFoodProvider previewProvider;
+    private ForagableFoodProvider.ForagableFoodDensityConfiguration[] previewDensities;
+    private ForagableFoodRasterizer rasterizer;
+    private ForagableFoodFacet[] facets;
+    private StandIns.WriteLog log;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        fixture = new ForagingFixture(GoldenHashCheck.CHUNKS_PER_SIDE);
+        GoldenHashCheck.verify(fixture, density);
+
+        provider = ForagingFixture.provider(density);
+        rasterizer = fixture.rasterizer();
+        facets = new ForagableFoodFacet[fixture.size()];
+        for (int i = 0; i < facets.length; i++) {
+            facets[i] = fixture.process(provider, i);
+        }
+        log = new StandIns.WriteLog();
+
+        evenProvider = ForagingFixture.provider(density);
+        ForagableFoodProvider.ForagableFoodDensityConfiguration even =
+                new ForagableFoodProvider.ForagableFoodDensityConfiguration();
+        even.density = density;
+        even.evenSpacing = true;
+        evenProvider.setConfiguration(even);
+
+        // the preview moves the slider around the benchmarked density, over regions it has already processed
+        previewProvider = ForagingFixture.provider(density, fixture.size());
+        previewDensities = new ForagableFoodProvider.ForagableFoodDensityConfiguration[2];
+        for (int i = 0; i < previewDensities.length; i++) {
+            previewDensities[i] = new ForagableFoodProvider.ForagableFoodDensityConfiguration();
+            previewDensities[i].density = Math.max(0, density - 0.05f * i);
+        }
+        for (int i = 0; i < fixture.size(); i++) {
+            fixture.process(previewProvider, i);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ForagableFoodFacet providerChunksPerSecond() {
+        return fixture.process(provider, nextChunk());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public ForagableFoodFacet providerLatency() {
+        return fixture.process(provider, nextChunk());
+    }
+
+    /**
+     * Processes a region with even spacing, which only looks at the columns of the Poisson-disk points.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ForagableFoodFacet evenProviderChunksPerSecond() {
+        return fixture.process(evenProvider, nextChunk());
+    }
+
+    /**
+     * Processes a region again after a density change, as the world preview does.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ForagableFoodFacet previewChunksPerSecond() {
+        int index = nextChunk();
+        previewProvider.setConfiguration(previewDensities[index & 1]);
+        return fixture.process(previewProvider, index);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void rasterizerChunksPerSecond(Blackhole blackhole) {
+        int index = nextChunk();
+        fixture.rasterize(rasterizer, index, facets[index], log);
+        blackhole.consume(log.getCount());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void rasterizerLatency(Blackhole blackhole) {
+        int index = nextChunk();
+        fixture.rasterize(rasterizer, index, facets[index], log);
+        blackhole.consume(log.getCount());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void generateChunksPerSecond(Blackhole blackhole) {
+        int index = nextChunk();
+        fixture.rasterize(rasterizer, index, fixture.process(provider, index), log);
+        blackhole.consume(log.getCount());
+    }
+
+    private int nextChunk() {
+        int index = next;
+        next = (next + 1) % facets.length;
+        return index;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ForagingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+/**
+ * Verifies that the foraging plugins place exactly the same blocks as {@link ReferencePlacement} on the fixture.
+ * <p>
+ * The expected fingerprint is computed from the reference rules on every run instead of being recorded once, so it
+ * follows the engine's noise implementation and needs nothing committed next to it. A change that is meant to alter
+ * placement changes {@link ReferencePlacement} in the same commit.
+ */
+final class GoldenHashCheck {
+    static final float[] DENSITIES = {0.05f, 0.4f, 1.0f};
+    static final int CHUNKS_PER_SIDE = 8;
+
+    private GoldenHashCheck() {
+    }
+
+    /**
+     * @throws IllegalStateException if the placements differ from the reference ones
+     */
+    static void verify(ForagingFixture fixture, float density) {
+        String expected = fingerprint(ReferencePlacement.generate(fixture, density));
+        String actual = fingerprint(fixture.generateAll(density));
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Foraging placement differs from the reference for density " + density
+                    + ": expected " + expected + " but was " + actual);
+        }
+    }
+
+    public static void main(String[] args) {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        for (float density : DENSITIES) {
+            verify(fixture, density);
+            StandIns.WriteLog log = fixture.generateAll(density);
+            System.out.println("density " + density + ": " + log.getCount() + " blocks, " + fingerprint(log));
+        }
+    }
+
+    private static String fingerprint(StandIns.WriteLog log) {
+        return log.getCount() + ":" + Long.toHexString(log.getHash());
+    }
+}
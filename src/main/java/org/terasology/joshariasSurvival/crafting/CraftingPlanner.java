@@ -0,0 +1,352 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Finds the cheapest way to craft an item from raw materials, over the recipes of a {@link CraftingSnapshot}.
+ * <p>
+ * Recipes form a hypergraph: each recipe is an edge from all of its inputs to each of its outputs, and can only be used
+ * once every input can be made. The cost of a recipe is a fixed step cost plus the costs of its inputs, which makes
+ * Knuth's generalization of Dijkstra's algorithm apply: items are finished in order of their cost, and a recipe is
+ * evaluated once its last input is finished. One run computes the cheapest recipe of every item, so it is done once
+ * per {@link Cost} and every query after that only walks the chosen recipes.
+ * <p>
+ * Raw materials are the items gathered in the world, whether or not a recipe makes them too, and the items no recipe
+ * makes. A recipe that returns one of its own inputs, like a tool or a catalyst, does not count as making it, so an
+ * item only ever returned that way is raw as well. Items that can only be made through a cycle of recipes cannot be
+ * crafted from raw materials and have no plan.
+ */
+public final class CraftingPlanner {
+    /**
+     * Never reached by a plan: costs saturate one below.
+     */
+    public static final long UNCRAFTABLE = Long.MAX_VALUE;
+
+    private final List<ResourceUrn> items;
+    private final Map<ResourceUrn, Integer> ids;
+    private final String[] recipeProcessTypes;
+    private final int[][] recipeInputs;
+    /**
+     * Per recipe, the items it makes, leaving out the inputs it returns.
+     */
+    private final int[][] recipeOutputs;
+    /**
+     * Per recipe, the inputs it also has as outputs.
+     */
+    private final int[][] recipeReturns;
+    /**
+     * Per item, the recipes that take it as input, once per occurrence.
+     */
+    private final int[][] usedBy;
+    private final boolean[] gathered;
+    /**
+     * Whether any recipe makes the item.
+     */
+    private final boolean[] made;
+    private final boolean[] raw;
+
+    private final Map<Cost, Plan> plans = new ConcurrentHashMap<>();
+
+    /**
+     * How plans are compared.
+     */
+    public enum Cost {
+        /**
+         * The number of crafting steps, counting every input made separately.
+         */
+        STEPS(0, 1),
+        /**
+         * The number of raw materials consumed, counting every input once.
+         */
+        RAW_INPUTS(1, 0);
+
+        private final long rawCost;
+        private final long stepCost;
+
+        Cost(long rawCost, long stepCost) {
+            this.rawCost = rawCost;
+            this.stepCost = stepCost;
+        }
+    }
+
+    private CraftingPlanner(List<ResourceUrn> items, Map<ResourceUrn, Integer> ids, String[] recipeProcessTypes,
+                            int[][] recipeInputs, int[][] recipeOutputs, int[][] recipeReturns, boolean[] gathered) {
+        this.items = items;
+        this.ids = ids;
+        this.recipeProcessTypes = recipeProcessTypes;
+        this.recipeInputs = recipeInputs;
+        this.recipeOutputs = recipeOutputs;
+        this.recipeReturns = recipeReturns;
+        this.gathered = gathered;
+
+        int[] usedByCount = new int[items.size()];
+        made = new boolean[items.size()];
+        for (int recipe = 0; recipe < recipeInputs.length; recipe++) {
+            for (int input : recipeInputs[recipe]) {
+                usedByCount[input]++;
+            }
+            for (int output : recipeOutputs[recipe]) {
+                made[output] = true;
+            }
+        }
+        raw = new boolean[items.size()];
+        for (int id = 0; id < raw.length; id++) {
+            raw[id] = gathered[id] || !made[id];
+        }
+        usedBy = new int[items.size()][];
+        for (int id = 0; id < usedBy.length; id++) {
+            usedBy[id] = new int[usedByCount[id]];
+            usedByCount[id] = 0;
+        }
+        for (int recipe = 0; recipe < recipeInputs.length; recipe++) {
+            for (int input : recipeInputs[recipe]) {
+                usedBy[input][usedByCount[input]++] = recipe;
+            }
+        }
+    }
+
+    /**
+     * Indexes the recipes of the snapshot. Recipes without outputs are left out, as they never help making anything.
+     *
+     * @param gathered the items obtained in the world without a recipe, e.g. by mining their block
+     */
+    public static CraftingPlanner of(List<CraftingSnapshot.Recipe> recipes, Set<ResourceUrn> gathered) {
+        List<ResourceUrn> items = Lists.newArrayList();
+        Map<ResourceUrn, Integer> ids = Maps.newHashMap();
+        List<String> processTypes = Lists.newArrayList();
+        List<int[]> inputs = Lists.newArrayList();
+        List<int[]> outputs = Lists.newArrayList();
+        List<int[]> returns = Lists.newArrayList();
+        for (CraftingSnapshot.Recipe recipe : recipes) {
+            if (recipe.getOutputs().isEmpty()) {
+                continue;
+            }
+            Map<Boolean, List<ResourceUrn>> returned = recipe.getOutputs().stream()
+                    .collect(Collectors.partitioningBy(recipe.getInputs()::contains));
+            processTypes.add(recipe.getProcessType());
+            inputs.add(intern(recipe.getInputs(), items, ids));
+            outputs.add(intern(returned.get(false), items, ids));
+            returns.add(intern(returned.get(true), items, ids));
+        }
+        boolean[] gatheredIds = new boolean[items.size()];
+        for (int id = 0; id < gatheredIds.length; id++) {
+            gatheredIds[id] = gathered.contains(items.get(id));
+        }
+        return new CraftingPlanner(ImmutableList.copyOf(items), ids, processTypes.toArray(new String[0]),
+                inputs.toArray(new int[0][]), outputs.toArray(new int[0][]), returns.toArray(new int[0][]),
+                gatheredIds);
+    }
+
+    /**
+     * @return the items that take part in any recipe and match the query, either by their full URN or, ignoring case,
+     * by their resource name; an exact match is returned alone
+     */
+    public List<ResourceUrn> find(String query) {
+        String lowerCase = query.toLowerCase(Locale.ROOT);
+        List<ResourceUrn> matches = Lists.newArrayList();
+        for (ResourceUrn item : items) {
+            if (item.toString().equalsIgnoreCase(query)) {
+                return ImmutableList.of(item);
+            }
+            if (item.getResourceName().toString().toLowerCase(Locale.ROOT).equals(lowerCase)) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the cost of the cheapest way to make the item, {@link #UNCRAFTABLE} if there is none
+     */
+    public long getCost(ResourceUrn item, Cost cost) {
+        Integer id = ids.get(item);
+        return id == null ? UNCRAFTABLE : plan(cost).cost[id];
+    }
+
+    /**
+     * Describes the cheapest way to make the item as an indented tree, one line per item. Items that appear more than
+     * once are only expanded the first time.
+     *
+     * @param maxLines the tree is cut off after this many lines
+     */
+    public String describe(ResourceUrn item, Cost cost, int maxLines) {
+        Integer id = ids.get(item);
+        Plan plan = plan(cost);
+        if (id == null || plan.cost[id] == UNCRAFTABLE) {
+            return item + " cannot be crafted from raw materials";
+        }
+        if (raw[id]) {
+            return item + " is a raw material, " + describeRaw(id);
+        }
+
+        StringBuilder result = new StringBuilder();
+        result.append(item).append(": ").append(plan.cost[id]).append(cost == Cost.STEPS ? " steps" : " raw inputs");
+        boolean[] expanded = new boolean[items.size()];
+        int lines = describe(plan, id, 1, expanded, result, maxLines - 1);
+        if (lines < 0) {
+            result.append("\n...");
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the lines left, or -1 if they ran out
+     */
+    private int describe(Plan plan, int id, int depth, boolean[] expanded, StringBuilder result, int lines) {
+        int recipe = plan.recipe[id];
+        if (recipe < 0) {
+            return lines;
+        }
+        expanded[id] = true;
+        result.append(" at ").append(recipeProcessTypes[recipe]);
+        for (int input : recipeInputs[recipe]) {
+            if (lines == 0) {
+                return -1;
+            }
+            lines--;
+            result.append('\n');
+            for (int i = 0; i < depth; i++) {
+                result.append("  ");
+            }
+            result.append("- ").append(items.get(input));
+            if (returns(recipe, input)) {
+                result.append(" (returned)");
+            }
+            if (raw[input]) {
+                result.append(gathered[input] ? " (raw, gathered)" : " (raw)");
+            } else if (expanded[input]) {
+                result.append(" (see above)");
+            } else {
+                lines = describe(plan, input, depth + 1, expanded, result, lines);
+                if (lines < 0) {
+                    return -1;
+                }
+            }
+        }
+        return lines;
+    }
+
+    private String describeRaw(int id) {
+        if (gathered[id]) {
+            return made[id] ? "it is gathered in the world, though a process can make it as well"
+                    : "it is gathered in the world";
+        }
+        for (int recipe : usedBy[id]) {
+            if (returns(recipe, id)) {
+                return "the processes that need it give it back, and no process makes it";
+            }
+        }
+        return "no process makes it";
+    }
+
+    /**
+     * @return whether the recipe gives the input back, like a tool or a catalyst
+     */
+    private boolean returns(int recipe, int input) {
+        for (int output : recipeReturns[recipe]) {
+            if (output == input) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Plan plan(Cost cost) {
+        return plans.computeIfAbsent(cost, this::computePlan);
+    }
+
+    private Plan computePlan(Cost cost) {
+        long[] best = new long[items.size()];
+        int[] bestRecipe = new int[items.size()];
+        Arrays.fill(best, UNCRAFTABLE);
+        Arrays.fill(bestRecipe, -1);
+        boolean[] finished = new boolean[items.size()];
+        int[] missingInputs = new int[recipeInputs.length];
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+
+        for (int id = 0; id < items.size(); id++) {
+            if (raw[id]) {
+                best[id] = cost.rawCost;
+                queue.add(new long[]{cost.rawCost, id});
+            }
+        }
+        for (int recipe = 0; recipe < recipeInputs.length; recipe++) {
+            missingInputs[recipe] = recipeInputs[recipe].length;
+            if (missingInputs[recipe] == 0) {
+                offer(recipe, cost, best, bestRecipe, queue);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int id = (int) entry[1];
+            if (finished[id] || entry[0] > best[id]) {
+                continue;
+            }
+            finished[id] = true;
+            for (int recipe : usedBy[id]) {
+                if (--missingInputs[recipe] == 0) {
+                    offer(recipe, cost, best, bestRecipe, queue);
+                }
+            }
+        }
+        return new Plan(best, bestRecipe);
+    }
+
+    /**
+     * Evaluates a recipe whose inputs are all finished, improving its outputs where it is cheaper. Raw materials keep
+     * their raw cost, even where a recipe makes them too.
+     */
+    private void offer(int recipe, Cost cost, long[] best, int[] bestRecipe, PriorityQueue<long[]> queue) {
+        long total = cost.stepCost;
+        for (int input : recipeInputs[recipe]) {
+            long sum = total + best[input];
+            total = sum < 0 || sum == UNCRAFTABLE ? UNCRAFTABLE - 1 : sum;
+        }
+        for (int output : recipeOutputs[recipe]) {
+            if (!raw[output] && total < best[output]) {
+                best[output] = total;
+                bestRecipe[output] = recipe;
+                queue.add(new long[]{total, output});
+            }
+        }
+    }
+
+    private static int[] intern(List<ResourceUrn> urns, List<ResourceUrn> items, Map<ResourceUrn, Integer> ids) {
+        int[] result = new int[urns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.computeIfAbsent(urns.get(i), key -> {
+                items.add(key);
+                return items.size() - 1;
+            });
+        }
+        return result;
+    }
+
+    private static final class Plan {
+        private final long[] cost;
+        /**
+         * The cheapest recipe per item, -1 for raw materials and items that cannot be made.
+         */
+        private final int[] recipe;
+
+        Plan(long[] cost, int[] recipe) {
+            this.cost = cost;
+            this.recipe = recipe;
+        }
+    }
+}
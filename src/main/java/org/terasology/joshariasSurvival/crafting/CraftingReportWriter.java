@@ -0,0 +1,165 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes the crafting diagnostics of a {@link CraftingSnapshot} as JSON Lines, one record per line.
+ * <p>
+ * Records are streamed through a buffered writer on a file channel as they are produced, so the report is never held
+ * in memory as a whole. Every record has a {@code "type"}:
+ * <ul>
+ *     <li>{@code recipe}: a described process with its {@code process} type, {@code inputs} and {@code outputs}</li>
+ *     <li>{@code item}: a craftable {@code item} with its {@code maxDepth} and {@code maxComplexity}</li>
+ *     <li>{@code orphan}: an {@code item} without an output process</li>
+ *     <li>{@code summary}: the last record, with the number of {@code recipes}, {@code items} and {@code orphans} written
+ *     before it; a report without it was cut short</li>
+ * </ul>
+ */
+public final class CraftingReportWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CraftingReportWriter() {
+    }
+
+    /**
+     * Writes the report, replacing the file if it exists.
+     *
+     * @return how many records of each type were written
+     */
+    public static Summary write(CraftingSnapshot snapshot, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+
+        Summary summary = new Summary();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1), BUFFER_SIZE)) {
+
+            for (CraftingSnapshot.Recipe recipe : snapshot.getRecipes()) {
+                writer.write("{\"type\":\"recipe\",\"process\":");
+                writeString(writer, recipe.getProcessType());
+                writer.write(",\"inputs\":");
+                writeArray(writer, recipe.getInputs());
+                writer.write(",\"outputs\":");
+                writeArray(writer, recipe.getOutputs());
+                writer.write("}\n");
+                summary.recipes++;
+            }
+
+            RecipeGraph graph = snapshot.getRecipeGraph();
+            for (int id : graph.getCraftableIds()) {
+                writer.write("{\"type\":\"item\",\"item\":");
+                writeString(writer, graph.getItem(id).toString());
+                writer.write(",\"maxDepth\":");
+                writer.write(Integer.toString(graph.getMaxInputDepth(id)));
+                writer.write(",\"maxComplexity\":");
+                writer.write(Long.toString(graph.getMaxInputComplexity(id)));
+                writer.write("}\n");
+                summary.items++;
+            }
+
+            for (ResourceUrn orphan : snapshot.getItemsWithoutOutputProcess()) {
+                writer.write("{\"type\":\"orphan\",\"item\":");
+                writeString(writer, orphan.toString());
+                writer.write("}\n");
+                summary.orphans++;
+            }
+
+            writer.write("{\"type\":\"summary\",\"recipes\":");
+            writer.write(Integer.toString(summary.recipes));
+            writer.write(",\"items\":");
+            writer.write(Integer.toString(summary.items));
+            writer.write(",\"orphans\":");
+            writer.write(Integer.toString(summary.orphans));
+            writer.write("}\n");
+        }
+        return summary;
+    }
+
+    private static void writeArray(Writer writer, List<ResourceUrn> urns) throws IOException {
+        writer.write('[');
+        for (int i = 0; i < urns.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeString(writer, urns.get(i).toString());
+        }
+        writer.write(']');
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Counts of the records in a written report.
+     */
+    public static final class Summary {
+        private int recipes;
+        private int items;
+        private int orphans;
+
+        public int getRecipes() {
+            return recipes;
+        }
+
+        public int getItems() {
+            return items;
+        }
+
+        public int getOrphans() {
+            return orphans;
+        }
+
+        @Override
+        public String toString() {
+            return recipes + " recipes, " + items + " items, " + orphans + " items without an output process";
+        }
+    }
+}
@@ -0,0 +1,211 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.engine.world.block.loader.BlockFamilyDefinition;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.inGameHelpAPI.components.ItemHelpComponent;
+import org.terasology.workstation.component.WorkstationComponent;
+import org.terasology.workstation.process.DescribeProcess;
+import org.terasology.workstation.process.ProcessPartDescription;
+import org.terasology.workstation.process.WorkstationProcess;
+import org.terasology.workstation.system.WorkstationRegistry;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * An immutable index of the workstation process types, the described processes with their inputs and outputs, the
+ * items with in-game help, and the items that can be gathered in the world.
+ * <p>
+ * Capturing has to happen on the game thread, since it reads assets and the workstation registry. Everything else only
+ * works on the copied data and can run on any thread.
+ */
+public final class CraftingSnapshot {
+    private final Set<String> processTypes;
+    private final List<Recipe> recipes;
+    private final List<ResourceUrn> helpItems;
+    private final Set<ResourceUrn> gatheredItems;
+
+    private final Supplier<List<ResourceUrn>> itemsWithoutOutputProcess = Suppliers.memoize(this::findItemsWithoutOutputProcess);
+    private final Supplier<RecipeGraph> recipeGraph = Suppliers.memoize(this::buildRecipeGraph);
+    private final Supplier<CraftingPlanner> craftingPlanner = Suppliers.memoize(() -> CraftingPlanner.of(getRecipes(), getGatheredItems()));
+
+    public CraftingSnapshot(Collection<String> processTypes, List<Recipe> recipes, List<ResourceUrn> helpItems,
+                            Collection<ResourceUrn> gatheredItems) {
+        this.processTypes = ImmutableSet.copyOf(processTypes);
+        this.recipes = ImmutableList.copyOf(recipes);
+        this.helpItems = ImmutableList.copyOf(helpItems);
+        this.gatheredItems = ImmutableSet.copyOf(gatheredItems);
+    }
+
+    /**
+     * Reads every process described by a workstation, every item with in-game help, and the block families no process
+     * makes, as those can only be gathered by mining them. Each prefab is resolved once and the workstation registry is
+     * queried once.
+     */
+    public static CraftingSnapshot capture(WorkstationRegistry workstationRegistry) {
+        Set<String> processTypes = Sets.newLinkedHashSet();
+        ImmutableList.Builder<ResourceUrn> helpItems = ImmutableList.builder();
+        for (ResourceUrn urn : Assets.list(Prefab.class)) {
+            Optional<Prefab> prefab = Assets.get(urn, Prefab.class);
+            if (!prefab.isPresent()) {
+                continue;
+            }
+            WorkstationComponent workstation = prefab.get().getComponent(WorkstationComponent.class);
+            if (workstation != null) {
+                processTypes.addAll(workstation.supportedProcessTypes.keySet());
+            }
+            if (prefab.get().hasComponent(ItemHelpComponent.class)) {
+                helpItems.add(urn);
+            }
+        }
+
+        ImmutableList.Builder<Recipe> builder = ImmutableList.builder();
+        for (WorkstationProcess process : workstationRegistry.getWorkstationProcesses(ImmutableList.copyOf(processTypes))) {
+            if (process instanceof DescribeProcess) {
+                DescribeProcess describeProcess = (DescribeProcess) process;
+                builder.add(new Recipe(process.getProcessType(),
+                        urns(describeProcess.getInputDescriptions()), urns(describeProcess.getOutputDescriptions())));
+            }
+        }
+        List<Recipe> recipes = builder.build();
+
+        return new CraftingSnapshot(processTypes, recipes, helpItems.build(),
+                gatheredBlocks(Assets.list(BlockFamilyDefinition.class), recipes));
+    }
+
+    /**
+     * Picks the blocks that are only gathered. Blocks a process makes, like workstations, are crafted rather than
+     * found in the world, and would otherwise stop the planner at them as if they were raw materials.
+     *
+     * @return the given block families that are not the output of any recipe
+     */
+    static Set<ResourceUrn> gatheredBlocks(Collection<ResourceUrn> blockFamilies, List<Recipe> recipes) {
+        Set<ResourceUrn> made = Sets.newHashSet();
+        for (Recipe recipe : recipes) {
+            made.addAll(recipe.getOutputs());
+        }
+        return blockFamilies.stream()
+                .filter(block -> !made.contains(block))
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    /**
+     * @return the process types supported by any workstation
+     */
+    public Set<String> getProcessTypes() {
+        return processTypes;
+    }
+
+    public List<Recipe> getRecipes() {
+        return recipes;
+    }
+
+    public List<ResourceUrn> getHelpItems() {
+        return helpItems;
+    }
+
+    /**
+     * @return the items that can only be obtained in the world, by mining their block
+     */
+    public Set<ResourceUrn> getGatheredItems() {
+        return gatheredItems;
+    }
+
+    /**
+     * @return every item that is used as an input or has help, but is not the output of any process, sorted by URN;
+     * computed on first use
+     */
+    public List<ResourceUrn> getItemsWithoutOutputProcess() {
+        return itemsWithoutOutputProcess.get();
+    }
+
+    /**
+     * @return the recipe graph, built on first use. Items with help but no process count as craftable from nothing.
+     */
+    public RecipeGraph getRecipeGraph() {
+        return recipeGraph.get();
+    }
+
+    /**
+     * @return the planner over the recipes, built on first use, with the gathered items as raw materials
+     */
+    public CraftingPlanner getCraftingPlanner() {
+        return craftingPlanner.get();
+    }
+
+    private List<ResourceUrn> findItemsWithoutOutputProcess() {
+        Set<ResourceUrn> knownInputs = Sets.newHashSet();
+        Set<ResourceUrn> knownOutputs = Sets.newHashSet();
+        for (Recipe recipe : recipes) {
+            knownInputs.addAll(recipe.getInputs());
+            knownOutputs.addAll(recipe.getOutputs());
+        }
+        knownInputs.addAll(helpItems);
+
+        return knownInputs.stream()
+                .filter(input -> !knownOutputs.contains(input))
+                .sorted(Comparator.comparing(ResourceUrn::toString))
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private RecipeGraph buildRecipeGraph() {
+        RecipeGraph.Builder builder = RecipeGraph.builder();
+        for (Recipe recipe : recipes) {
+            for (ResourceUrn output : recipe.getOutputs()) {
+                builder.addRecipe(output, recipe.getInputs());
+            }
+        }
+        for (ResourceUrn helpItem : helpItems) {
+            builder.addRecipe(helpItem, Collections.emptyList());
+        }
+        return builder.build();
+    }
+
+    private static List<ResourceUrn> urns(Collection<ProcessPartDescription> descriptions) {
+        return descriptions.stream()
+                .map(ProcessPartDescription::getResourceUrn)
+                .filter(Objects::nonNull)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * The items a single process consumes and produces.
+     */
+    public static final class Recipe {
+        private final String processType;
+        private final List<ResourceUrn> inputs;
+        private final List<ResourceUrn> outputs;
+
+        public Recipe(String processType, List<ResourceUrn> inputs, List<ResourceUrn> outputs) {
+            this.processType = processType;
+            this.inputs = ImmutableList.copyOf(inputs);
+            this.outputs = ImmutableList.copyOf(outputs);
+        }
+
+        public String getProcessType() {
+            return processType;
+        }
+
+        public List<ResourceUrn> getInputs() {
+            return inputs;
+        }
+
+        public List<ResourceUrn> getOutputs() {
+            return outputs;
+        }
+    }
+}
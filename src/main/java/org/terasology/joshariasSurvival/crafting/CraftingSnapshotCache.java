@@ -0,0 +1,54 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import org.terasology.engine.core.module.ModuleManager;
+import org.terasology.workstation.system.WorkstationRegistry;
+
+/**
+ * Keeps the last {@link CraftingSnapshot} around, so that repeated diagnostics do not scan the assets again.
+ * <p>
+ * The snapshot is captured again when the module environment changes, or after {@link #invalidate()}. Assets reloaded
+ * in place within the same environment, e.g. a prefab edited while the game runs, are not noticed: the engine does not
+ * tell modules about such reloads, and checking every prefab for changes would cost as much as capturing again. After
+ * such a reload, {@code jsDiagnosticsReindex} calls {@link #invalidate()}.
+ */
+public class CraftingSnapshotCache {
+    private final WorkstationRegistry workstationRegistry;
+    private final ModuleManager moduleManager;
+
+    private CraftingSnapshot snapshot;
+    private Object environment;
+
+    public CraftingSnapshotCache(WorkstationRegistry workstationRegistry, ModuleManager moduleManager) {
+        this.workstationRegistry = workstationRegistry;
+        this.moduleManager = moduleManager;
+    }
+
+    /**
+     * Returns the cached snapshot, capturing it first if needed. Must be called on the game thread.
+     */
+    public synchronized CraftingSnapshot get() {
+        Object currentEnvironment = moduleManager.getEnvironment();
+        if (snapshot == null || environment != currentEnvironment) {
+            snapshot = CraftingSnapshot.capture(workstationRegistry);
+            environment = currentEnvironment;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return whether a snapshot is cached for the current module environment
+     */
+    public synchronized boolean isValid() {
+        return snapshot != null && environment == moduleManager.getEnvironment();
+    }
+
+    /**
+     * Drops the cached snapshot, so that the next {@link #get()} captures the assets as they are now.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        environment = null;
+    }
+}
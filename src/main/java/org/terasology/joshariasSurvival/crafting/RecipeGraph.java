@@ -0,0 +1,321 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of which items can be crafted from which inputs, with the crafting depth and complexity of every item.
+ * <p>
+ * Items are interned to dense integer ids. Every craftable item has one or more recipes, each a list of input items;
+ * items without recipes are raw materials. Depth and complexity are computed once, bottom-up over the strongly connected
+ * components of the graph, so each item is evaluated exactly once regardless of how many recipes share it.
+ * <p>
+ * Definitions, for an item {@code x}:
+ * <ul>
+ *     <li>{@code depth(x)} is 0 for raw materials, otherwise 1 + the largest depth of any input of any recipe</li>
+ *     <li>{@code complexity(x)} is 1 for raw materials, otherwise 1 + the largest sum of input complexities over its
+ *     recipes</li>
+ * </ul>
+ * Inputs that lie on a cycle with {@code x} count as raw materials when evaluating {@code x}, which is how the cycles
+ * are cut.
+ */
+public final class RecipeGraph {
+    private final List<ResourceUrn> items;
+    private final Map<ResourceUrn, Integer> ids;
+    /**
+     * Recipes per item id, each recipe being the ids of its inputs. Null for raw materials.
+     */
+    private final int[][][] recipes;
+
+    private final int[] depth;
+    private final long[] complexity;
+    private final int[] component;
+
+    private RecipeGraph(List<ResourceUrn> items, Map<ResourceUrn, Integer> ids, int[][][] recipes) {
+        this.items = items;
+        this.ids = ids;
+        this.recipes = recipes;
+
+        depth = new int[items.size()];
+        complexity = new long[items.size()];
+        component = new int[items.size()];
+        new Evaluation().run();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the number of distinct items, craftable or not
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * @return the id of the item, or -1 if it does not take part in any recipe
+     */
+    public int getId(ResourceUrn item) {
+        Integer id = ids.get(item);
+        return id == null ? -1 : id;
+    }
+
+    public ResourceUrn getItem(int id) {
+        return items.get(id);
+    }
+
+    /**
+     * @return whether the item has at least one recipe (possibly one without inputs)
+     */
+    public boolean isCraftable(int id) {
+        return recipes[id] != null;
+    }
+
+    /**
+     * @return the ids of the items that have at least one recipe, in ascending order
+     */
+    public int[] getCraftableIds() {
+        int count = 0;
+        for (int[][] itemRecipes : recipes) {
+            if (itemRecipes != null) {
+                count++;
+            }
+        }
+        int[] result = new int[count];
+        int next = 0;
+        for (int id = 0; id < recipes.length; id++) {
+            if (recipes[id] != null) {
+                result[next++] = id;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the recipes of the item, each as the ids of its inputs; empty for raw materials. Do not modify.
+     */
+    public int[][] getRecipes(int id) {
+        return recipes[id] == null ? new int[0][] : recipes[id];
+    }
+
+    /**
+     * @return whether both items lie on a common crafting cycle
+     */
+    public boolean isSameCycle(int first, int second) {
+        return component[first] == component[second];
+    }
+
+    public int getDepth(int id) {
+        return depth[id];
+    }
+
+    public long getComplexity(int id) {
+        return complexity[id];
+    }
+
+    /**
+     * @return the largest depth of any input of any recipe of the item, as logged by the diagnostics
+     */
+    public int getMaxInputDepth(int id) {
+        int result = 0;
+        for (int[] recipe : getRecipes(id)) {
+            for (int input : recipe) {
+                result = Math.max(result, depth[input]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the largest complexity of any input of any recipe of the item, as logged by the diagnostics
+     */
+    public long getMaxInputComplexity(int id) {
+        long result = 0;
+        for (int[] recipe : getRecipes(id)) {
+            for (int input : recipe) {
+                result = Math.max(result, complexity[input]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Collects recipes. Identical recipes for the same output are only kept once.
+     */
+    public static final class Builder {
+        private final List<ResourceUrn> items = Lists.newArrayList();
+        private final Map<ResourceUrn, Integer> ids = Maps.newHashMap();
+        private final Map<Integer, Set<List<Integer>>> recipes = Maps.newHashMap();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a recipe making {@code output} from {@code inputs}. An empty input list marks the output as craftable
+         * from nothing.
+         */
+        public Builder addRecipe(ResourceUrn output, List<ResourceUrn> inputs) {
+            List<Integer> inputIds = Lists.newArrayListWithCapacity(inputs.size());
+            for (ResourceUrn input : inputs) {
+                inputIds.add(intern(input));
+            }
+            recipes.computeIfAbsent(intern(output), key -> new LinkedHashSet<>()).add(inputIds);
+            return this;
+        }
+
+        public RecipeGraph build() {
+            int[][][] recipeArrays = new int[items.size()][][];
+            for (Map.Entry<Integer, Set<List<Integer>>> entry : recipes.entrySet()) {
+                int[][] itemRecipes = new int[entry.getValue().size()][];
+                int next = 0;
+                for (List<Integer> recipe : entry.getValue()) {
+                    itemRecipes[next++] = recipe.stream().mapToInt(Integer::intValue).toArray();
+                }
+                recipeArrays[entry.getKey()] = itemRecipes;
+            }
+            return new RecipeGraph(ImmutableList.copyOf(items), Maps.newHashMap(ids), recipeArrays);
+        }
+
+        private int intern(ResourceUrn item) {
+            return ids.computeIfAbsent(item, key -> {
+                items.add(key);
+                return items.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, iterative to cope with deep recipe chains. Components are
+     * completed in reverse topological order, i.e. every input outside a component is finished before the component
+     * itself, which is exactly the order the depth and complexity recurrences need.
+     */
+    private final class Evaluation {
+        private final int[] index = new int[items.size()];
+        private final int[] low = new int[items.size()];
+        private final boolean[] onStack = new boolean[items.size()];
+        private final int[] stack = new int[items.size()];
+        private final int[] callStack = new int[items.size()];
+        private final int[] nextRecipe = new int[items.size()];
+        private final int[] nextInput = new int[items.size()];
+        private int stackSize;
+        private int counter;
+        private int components;
+
+        void run() {
+            Arrays.fill(index, -1);
+            for (int root = 0; root < items.size(); root++) {
+                if (index[root] < 0) {
+                    visit(root);
+                }
+            }
+        }
+
+        private void visit(int root) {
+            int callDepth = 0;
+            enter(root);
+            callStack[callDepth++] = root;
+
+            while (callDepth > 0) {
+                int node = callStack[callDepth - 1];
+                int child = nextChild(node);
+                if (child >= 0) {
+                    if (index[child] < 0) {
+                        enter(child);
+                        callStack[callDepth++] = child;
+                    } else if (onStack[child]) {
+                        low[node] = Math.min(low[node], index[child]);
+                    }
+                } else {
+                    callDepth--;
+                    if (low[node] == index[node]) {
+                        completeComponent(node);
+                    }
+                    if (callDepth > 0) {
+                        int parent = callStack[callDepth - 1];
+                        low[parent] = Math.min(low[parent], low[node]);
+                    }
+                }
+            }
+        }
+
+        private void enter(int node) {
+            index[node] = counter;
+            low[node] = counter;
+            counter++;
+            stack[stackSize++] = node;
+            onStack[node] = true;
+        }
+
+        /**
+         * @return the next input to explore from the node, or -1 when all have been explored
+         */
+        private int nextChild(int node) {
+            int[][] itemRecipes = recipes[node];
+            if (itemRecipes == null) {
+                return -1;
+            }
+            while (nextRecipe[node] < itemRecipes.length) {
+                int[] recipe = itemRecipes[nextRecipe[node]];
+                if (nextInput[node] < recipe.length) {
+                    return recipe[nextInput[node]++];
+                }
+                nextRecipe[node]++;
+                nextInput[node] = 0;
+            }
+            return -1;
+        }
+
+        private void completeComponent(int root) {
+            int id = components++;
+            int start = stackSize;
+            do {
+                start--;
+                onStack[stack[start]] = false;
+                component[stack[start]] = id;
+            } while (stack[start] != root);
+
+            for (int i = start; i < stackSize; i++) {
+                evaluate(stack[i], id);
+            }
+            stackSize = start;
+        }
+
+        private void evaluate(int node, int currentComponent) {
+            int[][] itemRecipes = recipes[node];
+            if (itemRecipes == null) {
+                depth[node] = 0;
+                complexity[node] = 1;
+                return;
+            }
+            int maxDepth = 0;
+            long maxComplexity = 0;
+            for (int[] recipe : itemRecipes) {
+                long sum = 0;
+                for (int input : recipe) {
+                    boolean cyclic = component[input] == currentComponent;
+                    maxDepth = Math.max(maxDepth, cyclic ? 0 : depth[input]);
+                    sum = saturatedAdd(sum, cyclic ? 1 : complexity[input]);
+                }
+                maxComplexity = Math.max(maxComplexity, sum);
+            }
+            depth[node] = 1 + maxDepth;
+            complexity[node] = saturatedAdd(1, maxComplexity);
+        }
+
+        private long saturatedAdd(long a, long b) {
+            long result = a + b;
+            return result < 0 ? Long.MAX_VALUE : result;
+        }
+    }
+}
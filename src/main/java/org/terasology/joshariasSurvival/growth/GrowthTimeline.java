@@ -0,0 +1,85 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import org.joml.Vector3ic;
+
+/**
+ * Derives the stage of a {@link LazyGrowthComponent} plant from its plant time and seed.
+ * <p>
+ * The duration of every stage is a pure function of the seed and the stage index, so the same plant reaches the same
+ * stage at the same game time no matter when, how often or on which server it is evaluated.
+ */
+public final class GrowthTimeline {
+    private GrowthTimeline() {
+    }
+
+    /**
+     * @return the stage the plant is in at the given game time; 0 before it was planted
+     */
+    public static int stageAt(LazyGrowthComponent growth, long time) {
+        int last = growth.stages.size() - 1;
+        long stageEnd = growth.plantTime;
+        for (int stage = 0; stage < last; stage++) {
+            stageEnd += duration(growth, stage);
+            if (time < stageEnd) {
+                return stage;
+            }
+        }
+        return Math.max(last, 0);
+    }
+
+    /**
+     * @return the game time at which the plant enters the given stage
+     */
+    public static long stageStart(LazyGrowthComponent growth, int stage) {
+        long start = growth.plantTime;
+        for (int i = 0; i < stage; i++) {
+            start += duration(growth, i);
+        }
+        return start;
+    }
+
+    /**
+     * @return the game time of the next stage change after the given time, or {@link Long#MAX_VALUE} once the plant is
+     * in its final stage
+     */
+    public static long nextChange(LazyGrowthComponent growth, long time) {
+        int stage = stageAt(growth, time);
+        if (stage >= growth.stages.size() - 1) {
+            return Long.MAX_VALUE;
+        }
+        return stageStart(growth, stage + 1);
+    }
+
+    /**
+     * @return the plant time that puts the plant at the start of the given stage at the given game time
+     */
+    public static long plantTimeFor(LazyGrowthComponent growth, int stage, long time) {
+        return time - (stageStart(growth, stage) - growth.plantTime);
+    }
+
+    /**
+     * @return a seed for a plant at the given position, for plants that come into existence without one
+     */
+    public static long seedFor(Vector3ic position) {
+        long hash = position.x() * 0x9e3779b97f4a7c15L ^ position.y() * 0xc2b2ae3d27d4eb4fL ^ position.z() * 0x165667b19e3779f9L;
+        return mix(hash);
+    }
+
+    static long duration(LazyGrowthComponent growth, int stage) {
+        long min = growth.minTimes.get(stage);
+        long max = Math.max(min, growth.maxTimes.get(stage));
+        return min + Math.floorMod(mix(growth.seed + stage), max - min + 1);
+    }
+
+    /**
+     * The SplitMix64 finalizer.
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
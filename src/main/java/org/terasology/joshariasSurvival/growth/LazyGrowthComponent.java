@@ -0,0 +1,68 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import com.google.common.collect.Lists;
+import org.terasology.gestalt.entitysystem.component.Component;
+
+import java.util.List;
+
+/**
+ * A plant that grows without timers: its stage is derived from {@link #plantTime} and {@link #seed} whenever it is
+ * needed, see {@link GrowthTimeline}.
+ * <p>
+ * Everything but the plant time and seed comes from the prefab, so a saved plant only stores those two values.
+ */
+public class LazyGrowthComponent implements Component<LazyGrowthComponent> {
+    /**
+     * Game time in milliseconds at which the plant entered its first stage, or -1 if not planted yet.
+     */
+    public long plantTime = -1;
+
+    /**
+     * Picks the stage durations between {@link #minTimes} and {@link #maxTimes}.
+     */
+    public long seed;
+
+    /**
+     * Block URIs of the stages, in order. The last stage is final and can be harvested.
+     */
+    public List<String> stages = Lists.newArrayList();
+
+    /**
+     * Shortest time in milliseconds spent in each stage but the last.
+     */
+    public List<Long> minTimes = Lists.newArrayList();
+
+    /**
+     * Longest time in milliseconds spent in each stage but the last.
+     */
+    public List<Long> maxTimes = Lists.newArrayList();
+
+    /**
+     * The stage the plant falls back to when harvested.
+     */
+    public int harvestStage;
+
+    /**
+     * Prefab of the item given on harvest.
+     */
+    public String produce;
+
+    /**
+     * Prefab of the seed item dropped when the plant is destroyed, if any.
+     */
+    public String seedItem;
+
+    @Override
+    public void copyFrom(LazyGrowthComponent other) {
+        this.plantTime = other.plantTime;
+        this.seed = other.seed;
+        this.stages = Lists.newArrayList(other.stages);
+        this.minTimes = Lists.newArrayList(other.minTimes);
+        this.maxTimes = Lists.newArrayList(other.maxTimes);
+        this.harvestStage = other.harvestStage;
+        this.produce = other.produce;
+        this.seedItem = other.seedItem;
+    }
+}
@@ -0,0 +1,20 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+
+/**
+ * An item that plants a {@link LazyGrowthComponent} plant on the block it is used on.
+ */
+public class LazyGrowthSeedComponent implements Component<LazyGrowthSeedComponent> {
+    /**
+     * Prefab carrying the {@link LazyGrowthComponent} of the planted plant.
+     */
+    public String plant;
+
+    @Override
+    public void copyFrom(LazyGrowthSeedComponent other) {
+        this.plant = other.plant;
+    }
+}
@@ -0,0 +1,72 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of pending entries in parallel primitive arrays: a key, a due tick and a value each.
+ */
+final class PendingList {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private long[] dues = new long[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size;
+
+    void add(long key, long due, int value) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            dues = Arrays.copyOf(dues, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        dues[size] = due;
+        values[size] = value;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getKey(int index) {
+        return keys[index];
+    }
+
+    long getDue(int index) {
+        return dues[index];
+    }
+
+    int getValue(int index) {
+        return values[index];
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Hands every entry due up to the given tick to the visitor and removes it, keeping the order of the others.
+     *
+     * @return the earliest due tick left, or {@link Long#MAX_VALUE} if the list is empty now
+     */
+    long removeDue(long tick, TimingWheel.Visitor expired) {
+        long earliest = Long.MAX_VALUE;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (dues[i] <= tick) {
+                expired.visit(keys[i], dues[i], values[i]);
+            } else {
+                keys[kept] = keys[i];
+                dues[kept] = dues[i];
+                values[kept] = values[i];
+                earliest = Math.min(earliest, dues[i]);
+                kept++;
+            }
+        }
+        size = kept;
+        return earliest;
+    }
+}
@@ -0,0 +1,281 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Pending regrowths of foraged positions in the loaded chunks, each a packed block position, a due tick and a value
+ * naming what grows back.
+ * <p>
+ * The regrowths are kept per chunk, and only while the chunk is loaded: {@link #unloadChunk} encodes a chunk's
+ * regrowths for its caller to store and forgets them, {@link #loadChunk} takes them back and hands out those that
+ * expired meanwhile in one batch. A {@link TimingWheel} holds one wake-up per loaded chunk, at the earliest due tick of
+ * its regrowths; when it fires, the chunk hands out what is due and schedules its next wake-up. Wake-ups of chunks that
+ * unloaded, or whose earliest regrowth changed since, are skipped when they fire.
+ * <p>
+ * Chunks whose regrowths changed since they were loaded or last written are tracked, so that a save only encodes those
+ * (see {@link #writeChanged}). Not thread safe.
+ */
+public final class RegrowthSchedule {
+    private static final int FORMAT_VERSION = 2;
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final TimingWheel wakeUps;
+    private final Map<Long, ChunkRegrowths> chunks = Maps.newHashMap();
+    private final Set<Long> changed = Sets.newHashSet();
+    private int size;
+
+    public RegrowthSchedule(long currentTick) {
+        wakeUps = new TimingWheel(currentTick);
+    }
+
+    /**
+     * Receives the encoded regrowths of a chunk.
+     */
+    @FunctionalInterface
+    public interface ChunkWriter {
+        /**
+         * @param data the encoded regrowths, or null if the chunk has none
+         */
+        void write(long chunk, byte[] data);
+    }
+
+    /**
+     * @return the last tick handled by {@link #advanceTo}
+     */
+    public long getCurrentTick() {
+        return wakeUps.getCurrentTick();
+    }
+
+    /**
+     * @return the number of regrowths pending in the loaded chunks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of loaded chunks with pending regrowths
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Schedules a regrowth in a loaded chunk.
+     */
+    public void add(long position, long due, int value) {
+        long chunk = chunkKey(position);
+        ChunkRegrowths regrowths = chunks.computeIfAbsent(chunk, key -> new ChunkRegrowths());
+        regrowths.pending.add(position, due, value);
+        size++;
+        changed.add(chunk);
+        scheduleWakeUp(chunk, regrowths, due);
+    }
+
+    /**
+     * Expires everything due up to the given tick.
+     *
+     * @param apply receives the regrowths to apply now
+     */
+    public void advanceTo(long tick, TimingWheel.Visitor apply) {
+        wakeUps.advanceTo(tick, (chunk, due, value) -> {
+            ChunkRegrowths regrowths = chunks.get(chunk);
+            if (regrowths == null || regrowths.wakeUp != due) {
+                return;
+            }
+            regrowths.wakeUp = Long.MAX_VALUE;
+            expire(chunk, regrowths, due, apply);
+        });
+    }
+
+    /**
+     * Takes over the regrowths of a chunk that loaded, as encoded by {@link #unloadChunk}, and hands out those that
+     * are already due.
+     *
+     * @param data the encoded regrowths, or null if the chunk has none
+     * @param valueOf maps a name back to a value, or to a negative number to drop its regrowths
+     * @param apply receives the regrowths to apply now
+     */
+    public void loadChunk(long chunk, byte[] data, ToIntFunction<String> valueOf, TimingWheel.Visitor apply)
+            throws IOException {
+        if (data == null || chunks.containsKey(chunk)) {
+            return;
+        }
+        ChunkRegrowths regrowths = new ChunkRegrowths();
+        int dropped = decode(chunk, data, valueOf, regrowths.pending);
+        if (regrowths.pending.size() == 0) {
+            changed.add(chunk);
+            return;
+        }
+        chunks.put(chunk, regrowths);
+        size += regrowths.pending.size();
+        if (dropped > 0) {
+            changed.add(chunk);
+        }
+        expire(chunk, regrowths, getCurrentTick(), apply);
+    }
+
+    /**
+     * Forgets the regrowths of a chunk that unloads, writing them first if they changed since they were last written.
+     */
+    public void unloadChunk(long chunk, List<String> names, ChunkWriter writer) {
+        ChunkRegrowths regrowths = chunks.remove(chunk);
+        if (changed.remove(chunk)) {
+            writer.write(chunk, regrowths != null ? encode(chunk, regrowths.pending, names) : null);
+        }
+        if (regrowths != null) {
+            size -= regrowths.pending.size();
+        }
+    }
+
+    /**
+     * Writes the regrowths of every chunk that changed since it was loaded or last written.
+     */
+    public void writeChanged(List<String> names, ChunkWriter writer) {
+        for (long chunk : changed) {
+            ChunkRegrowths regrowths = chunks.get(chunk);
+            writer.write(chunk, regrowths != null ? encode(chunk, regrowths.pending, names) : null);
+        }
+        changed.clear();
+    }
+
+    /**
+     * Packs a block position into a long, 21 bits per coordinate.
+     */
+    public static long pack(int x, int y, int z) {
+        return (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    public static int unpackX(long position) {
+        return unpack(position >>> (2 * COORDINATE_BITS));
+    }
+
+    public static int unpackY(long position) {
+        return unpack(position >>> COORDINATE_BITS);
+    }
+
+    public static int unpackZ(long position) {
+        return unpack(position);
+    }
+
+    /**
+     * @return the packed position of the chunk containing the packed block position
+     */
+    public static long chunkKey(long position) {
+        return pack(unpackX(position) >> Chunks.POWER_X, unpackY(position) >> Chunks.POWER_Y, unpackZ(position) >> Chunks.POWER_Z);
+    }
+
+    private void expire(long chunk, ChunkRegrowths regrowths, long tick, TimingWheel.Visitor apply) {
+        int before = regrowths.pending.size();
+        long earliest = regrowths.pending.removeDue(tick, apply);
+        int expired = before - regrowths.pending.size();
+        if (expired > 0) {
+            size -= expired;
+            changed.add(chunk);
+        }
+        if (regrowths.pending.size() == 0) {
+            chunks.remove(chunk);
+        } else {
+            scheduleWakeUp(chunk, regrowths, earliest);
+        }
+    }
+
+    private void scheduleWakeUp(long chunk, ChunkRegrowths regrowths, long due) {
+        // the wheel runs anything already due on its next tick
+        long wakeUp = Math.max(due, getCurrentTick() + 1);
+        if (wakeUp < regrowths.wakeUp) {
+            regrowths.wakeUp = wakeUp;
+            wakeUps.add(chunk, wakeUp, 0);
+        }
+    }
+
+    /**
+     * Writes the regrowths of a chunk: the names of the values, then per regrowth its chunk-local position, due tick
+     * and the index of its value among the names.
+     */
+    private static byte[] encode(long chunk, PendingList pending, List<String> names) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                out.writeChar(localIndex(pending.getKey(i)));
+                out.writeLong(pending.getDue(i));
+                out.writeShort(pending.getValue(i));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the number of regrowths dropped because their value is no longer known
+     */
+    private static int decode(long chunk, byte[] data, ToIntFunction<String> valueOf, PendingList into) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unknown regrowth format version " + version);
+        }
+        int[] values = new int[in.readUnsignedShort()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = valueOf.applyAsInt(in.readUTF());
+        }
+        int minX = unpackX(chunk) << Chunks.POWER_X;
+        int minY = unpackY(chunk) << Chunks.POWER_Y;
+        int minZ = unpackZ(chunk) << Chunks.POWER_Z;
+        int count = in.readInt();
+        int dropped = 0;
+        for (int i = 0; i < count; i++) {
+            int local = in.readChar();
+            long due = in.readLong();
+            int index = in.readShort();
+            if (index >= 0 && index < values.length && values[index] >= 0) {
+                into.add(pack(minX + (local & (Chunks.SIZE_X - 1)), minY + (local >> (Chunks.POWER_X + Chunks.POWER_Z)),
+                        minZ + (local >> Chunks.POWER_X & (Chunks.SIZE_Z - 1))), due, values[index]);
+            } else {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private static char localIndex(long position) {
+        return (char) ((unpackX(position) & (Chunks.SIZE_X - 1))
+                | (unpackZ(position) & (Chunks.SIZE_Z - 1)) << Chunks.POWER_X
+                | (unpackY(position) & (Chunks.SIZE_Y - 1)) << (Chunks.POWER_X + Chunks.POWER_Z));
+    }
+
+    private static int unpack(long bits) {
+        return (int) ((bits & COORDINATE_MASK) << (64 - COORDINATE_BITS) >> (64 - COORDINATE_BITS));
+    }
+
+    /**
+     * The pending regrowths of one loaded chunk, and the tick of its live wake-up in the wheel.
+     */
+    private static final class ChunkRegrowths {
+        private final PendingList pending = new PendingList();
+        private long wakeUp = Long.MAX_VALUE;
+    }
+}
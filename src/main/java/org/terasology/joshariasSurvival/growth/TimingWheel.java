@@ -0,0 +1,114 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+/**
+ * A hierarchical timing wheel: {@link #LEVELS} wheels of {@link #SLOTS} slots each, where a slot of level {@code n}
+ * spans {@code SLOTS^n} ticks.
+ * <p>
+ * Adding an entry and expiring it are both O(1): an entry sits in the coarsest level its due tick fits in, and moves
+ * down one level each time the wheel above it turns, so each entry is touched at most {@link #LEVELS} times. Entries
+ * due further out than the top level can hold simply come around again.
+ * <p>
+ * Entries are a {@code long} key, a due tick and an {@code int} value. Not thread safe.
+ */
+public final class TimingWheel {
+    private static final int SLOT_BITS = 6;
+    static final int SLOTS = 1 << SLOT_BITS;
+    static final int LEVELS = 4;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final PendingList[][] wheels = new PendingList[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+    }
+
+    /**
+     * Receives expired entries.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(long key, long due, int value);
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds an entry. Entries that are already due expire on the next tick.
+     */
+    public void add(long key, long due, int value) {
+        insert(key, Math.max(due, currentTick + 1), value);
+        size++;
+    }
+
+    /**
+     * Turns the wheel up to and including the given tick, handing every expired entry to the visitor.
+     */
+    public void advanceTo(long tick, Visitor expired) {
+        while (currentTick < tick) {
+            currentTick++;
+            cascade(1);
+
+            PendingList slot = wheels[0][(int) (currentTick & SLOT_MASK)];
+            if (slot != null && slot.size() > 0) {
+                for (int i = 0; i < slot.size(); i++) {
+                    expired.visit(slot.getKey(i), slot.getDue(i), slot.getValue(i));
+                }
+                size -= slot.size();
+                slot.clear();
+            }
+        }
+    }
+
+    /**
+     * When the wheel below has come full circle, moves the current slot of this level down.
+     */
+    private void cascade(int level) {
+        if (level >= LEVELS || (currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+
+        PendingList slot = wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        if (slot == null || slot.size() == 0) {
+            return;
+        }
+        int count = slot.size();
+        long[] keys = new long[count];
+        long[] dues = new long[count];
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = slot.getKey(i);
+            dues[i] = slot.getDue(i);
+            values[i] = slot.getValue(i);
+        }
+        slot.clear();
+        for (int i = 0; i < count; i++) {
+            insert(keys[i], Math.max(dues[i], currentTick), values[i]);
+        }
+    }
+
+    private void insert(long key, long due, int value) {
+        long delta = due - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) ((due >>> (SLOT_BITS * level)) & SLOT_MASK);
+        PendingList slot = wheels[level][index];
+        if (slot == null) {
+            slot = new PendingList();
+            wheels[level][index] = slot;
+        }
+        slot.add(key, due, value);
+    }
+}
@@ -6,13 +6,16 @@ package org.terasology.joshariasSurvival.systems;
 import org.joml.RoundingMode;
 import org.joml.Vector3f;
 import org.joml.Vector3i;
+import org.joml.Vector3ic;
 import org.terasology.engine.entitySystem.entity.EntityManager;
 import org.terasology.engine.entitySystem.entity.EntityRef;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.engine.logic.console.commandSystem.annotations.Command;
 import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
 import org.terasology.engine.logic.console.commandSystem.annotations.Sender;
+import org.terasology.engine.logic.inventory.events.DropItemEvent;
 import org.terasology.module.inventory.components.InventoryComponent;
 import org.terasology.module.inventory.systems.InventoryManager;
 import org.terasology.engine.logic.location.LocationComponent;
@@ -20,6 +23,7 @@ import org.terasology.engine.network.ClientComponent;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.world.BlockEntityRegistry;
 import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockManager;
 import org.terasology.engine.world.block.BlockUri;
 import org.terasology.engine.world.block.items.BlockItemComponent;
@@ -27,10 +31,29 @@ import org.terasology.engine.world.block.items.BlockItemFactory;
 import org.terasology.engine.world.block.items.OnBlockItemPlaced;
 import org.terasology.machines.ExtendedInventoryManager;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
 @RegisterSystem
-public class DemoSystem extends BaseComponentSystem {
+public class DemoSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final BlockUri CHEST_URI = new BlockUri("CoreAdvancedAssets:Chest");
+
+    /**
+     * Placements beyond this many are spread over the following ticks, this many per tick.
+     */
+    private static final int PLACEMENTS_PER_TICK = 256;
+    private static final int SPACING = 2;
+
+    /**
+     * How many entities queued starter packs may create per tick.
+     */
+    private static final int GRANT_ENTITIES_PER_TICK = 64;
+
     @In
     BlockManager blockManager;
     @In
@@ -42,123 +65,325 @@ public class DemoSystem extends BaseComponentSystem {
     @In
     BlockEntityRegistry blockEntityRegistry;
 
+    private final Queue<Placement> pendingPlacements = new ArrayDeque<>();
+    private final Map<String, StarterPack> starterPacks = new HashMap<>();
+    private final Queue<Grant> pendingGrants = new ArrayDeque<>();
+    private BlockItemFactory blockItemFactory;
+
+    @Override
+    public void initialise() {
+        blockItemFactory = new BlockItemFactory(entityManager);
+    }
+
     @Command(shortDescription = "Gives items to demonstrate Josharias Survival", runOnServer = true)
     public String jsStarterPack(@CommandParam(value = "module", required = false) String pack, @Sender EntityRef client) {
-        BlockItemFactory blockFactory = new BlockItemFactory(entityManager);
         EntityRef player = client.getComponent(ClientComponent.class).character;
-        ArrayList<String> items = new ArrayList<>();
+        // only packs that exist are kept, so mistyped names do not pile up
+        String key = pack != null ? pack.toLowerCase() : "";
+        StarterPack starterPack = starterPacks.get(key);
+        if (starterPack == null) {
+            starterPack = resolveStarterPack(pack);
+            if (starterPack.size() == 0) {
+                return "There is no Josharias Survival " + pack + " starter pack";
+            }
+            starterPacks.put(key, starterPack);
+        }
+
+        Grant grant = new Grant(player, starterPack);
+        boolean idle = pendingGrants.isEmpty();
+        pendingGrants.add(grant);
+        if (idle) {
+            grantPending();
+        }
+
+        if (grant.isDone()) {
+            return "You received the Josharias Survival " + pack + " starter pack";
+        }
+        return "You will receive the Josharias Survival " + pack + " starter pack shortly";
+    }
+
+    /**
+     * Looks up everything in the given starter pack, or in all of them if {@code pack} is null.
+     */
+    private StarterPack resolveStarterPack(String pack) {
+        StarterPack.Builder builder = new StarterPack.Builder(blockManager);
         if (pack == null || pack.equalsIgnoreCase("ManualLabor")) {
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:CrudeHammer", 1),
-                blockFactory.newInstance(blockManager.getBlockFamily("Stone"), 32),
-                blockFactory.newInstance(blockManager.getBlockFamily("IronOre"), 32),
-                blockFactory.newInstance(blockManager.getBlockFamily("CoalOre"), 32),
-                blockFactory.newInstance(blockManager.getBlockFamily("OakTrunk"), 32),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Mallet", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:MetalFile", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Saw", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Pliers", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Screwdriver", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Wrench", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:SledgeHammer", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Axe", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Pickaxe", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Shovel", 1),
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:MagnifyingGlass", 1)
-            ));
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:Plank", 32)
-            ));
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                ExtendedInventoryManager.createItem(entityManager, "ManualLabor:WoodenBucket", 1)
-            ));
-            items.add("AssemblyTable");
-            items.add("ToolAssemblyTable");
-            items.add("Firebox");
-            items.add("Hearth");
-            items.add("Sifter");
-            items.add("Campfire");
+            builder.supplyChest()
+                .item("ManualLabor:CrudeHammer", 1)
+                .block("Stone", 32)
+                .block("IronOre", 32)
+                .block("CoalOre", 32)
+                .block("OakTrunk", 32)
+                .item("ManualLabor:Mallet", 1)
+                .item("ManualLabor:MetalFile", 1)
+                .item("ManualLabor:Saw", 1)
+                .item("ManualLabor:Pliers", 1)
+                .item("ManualLabor:Screwdriver", 1)
+                .item("ManualLabor:Wrench", 1)
+                .item("ManualLabor:SledgeHammer", 1)
+                .item("ManualLabor:Axe", 1)
+                .item("ManualLabor:Pickaxe", 1)
+                .item("ManualLabor:Shovel", 1)
+                .item("ManualLabor:MagnifyingGlass", 1)
+                .endSupplyChest();
+            builder.supplyChest()
+                .item("ManualLabor:Plank", 32)
+                .endSupplyChest();
+            builder.supplyChest()
+                .item("ManualLabor:WoodenBucket", 1)
+                .endSupplyChest();
+            builder.block("AssemblyTable", 1)
+                .block("ToolAssemblyTable", 1)
+                .block("Firebox", 1)
+                .block("Hearth", 1)
+                .block("Sifter", 1)
+                .block("Campfire", 1);
         }
 
 
         if (pack == null || pack.equalsIgnoreCase("IRLCorp")) {
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                ExtendedInventoryManager.createItem(entityManager, "WindmillSail", 1),
-                blockFactory.newInstance(blockManager.getBlockFamily("WoodenAxle"), 32)
-            ));
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                ExtendedInventoryManager.createItem(entityManager, "SubstanceMatters:MaterialItem#ManualLabor:Chunks|SubstanceMatters:Coal", 99),
-                blockFactory.newInstance(blockManager.getBlockFamily("Axle"), 32)
-            ));
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                blockFactory.newInstance(blockManager.getBlockFamily("ConveyorBelt"), 32)
-            ));
-            inventoryManager.giveItem(player, EntityRef.NULL, createSupplyChest(
-                blockFactory.newInstance(blockManager.getBlockFamily("FluidPipe"), 32)
-            ));
-            items.add("Windmill");
-            items.add("WoodenAxle");
-            items.add("WoodenGearBox");
-            items.add("Axle");
-            items.add("GearBox");
-            items.add("Engine");
-            items.add("Crusher");
-            items.add("Sawmill");
-            items.add("Grinder");
-            items.add("FrictionHeater");
-            items.add("ConveyorBelt");
-            items.add("ItemExtractor");
-            items.add("FluidPump");
-            items.add("FluidPipe");
-            items.add("FluidTank");
-        }
-
-        for (String itemName : items) {
-            inventoryManager.giveItem(player, EntityRef.NULL, blockFactory.newInstance(blockManager.getBlockFamily(itemName), 1));
-        }
-
-        return "You received the Josharias Survival " + pack + " starter pack";
+            builder.supplyChest()
+                .item("WindmillSail", 1)
+                .block("WoodenAxle", 32)
+                .endSupplyChest();
+            builder.supplyChest()
+                .item("SubstanceMatters:MaterialItem#ManualLabor:Chunks|SubstanceMatters:Coal", 99)
+                .block("Axle", 32)
+                .endSupplyChest();
+            builder.supplyChest()
+                .block("ConveyorBelt", 32)
+                .endSupplyChest();
+            builder.supplyChest()
+                .block("FluidPipe", 32)
+                .endSupplyChest();
+            builder.block("Windmill", 1)
+                .block("WoodenAxle", 1)
+                .block("WoodenGearBox", 1)
+                .block("Axle", 1)
+                .block("GearBox", 1)
+                .block("Engine", 1)
+                .block("Crusher", 1)
+                .block("Sawmill", 1)
+                .block("Grinder", 1)
+                .block("FrictionHeater", 1)
+                .block("ConveyorBelt", 1)
+                .block("ItemExtractor", 1)
+                .block("FluidPump", 1)
+                .block("FluidPipe", 1)
+                .block("FluidTank", 1);
+        }
+        return builder.build();
     }
 
-    private EntityRef createSupplyChest(EntityRef... items) {
-        BlockItemFactory blockFactory = new BlockItemFactory(entityManager);
+    /**
+     * Hands out queued starter packs, one supply chest at a time and then the loose items, until
+     * {@link #GRANT_ENTITIES_PER_TICK} entities have been created. Grants for players that left are dropped.
+     */
+    private void grantPending() {
+        int budget = GRANT_ENTITIES_PER_TICK;
+        while (budget > 0 && !pendingGrants.isEmpty()) {
+            Grant grant = pendingGrants.peek();
+            if (!grant.player.exists()) {
+                pendingGrants.poll();
+                continue;
+            }
 
-        EntityRef chest = blockFactory.newInstance(blockManager.getBlockFamily("CoreAdvancedAssets:Chest"), 1);
-        chest.addComponent(new InventoryComponent(items.length));
+            List<List<StarterPack.Item>> supplyChests = grant.pack.getSupplyChests();
+            if (grant.next < supplyChests.size()) {
+                List<StarterPack.Item> contents = supplyChests.get(grant.next);
+                give(grant.player, createSupplyChest(contents));
+                budget -= contents.size() + 1;
+                grant.next++;
+            } else {
+                List<StarterPack.Item> items = grant.pack.getItems();
+                int from = grant.next - supplyChests.size();
+                int to = Math.min(items.size(), from + budget);
+                giveItems(grant.player, items.subList(from, to));
+                budget -= to - from;
+                grant.next += to - from;
+            }
+            if (grant.isDone()) {
+                pendingGrants.poll();
+            }
+        }
+    }
 
-        for (EntityRef item : items) {
-            inventoryManager.giveItem(chest, chest, item);
+    private void giveItems(EntityRef player, List<StarterPack.Item> items) {
+        for (StarterPack.Item item : items) {
+            give(player, createItem(item));
         }
+    }
+
+    /**
+     * Gives the item to the player, which stacks it onto what the player holds. If it does not fit, it is dropped at
+     * the player's feet.
+     */
+    private void give(EntityRef player, EntityRef item) {
+        if (inventoryManager.giveItem(player, EntityRef.NULL, item)) {
+            return;
+        }
+        LocationComponent location = player.getComponent(LocationComponent.class);
+        if (location != null) {
+            item.send(new DropItemEvent(location.getWorldPosition(new Vector3f())));
+        } else {
+            item.destroy();
+        }
+    }
+
+    private EntityRef createItem(StarterPack.Item item) {
+        if (item.getBlockFamily() != null) {
+            return blockItemFactory.newInstance(item.getBlockFamily(), item.getCount());
+        }
+        return ExtendedInventoryManager.createItem(entityManager, item.getPrefab(), item.getCount());
+    }
+
+    /**
+     * Creates a supply chest item holding new items. The chest is not anywhere yet, so its slots are filled directly
+     * instead of giving the items one by one.
+     */
+    private EntityRef createSupplyChest(List<StarterPack.Item> contents) {
+        EntityRef chest = blockItemFactory.newInstance(blockManager.getBlockFamily(CHEST_URI), 1);
+        InventoryComponent inventory = new InventoryComponent(contents.size());
+        for (int i = 0; i < contents.size(); i++) {
+            EntityRef item = createItem(contents.get(i));
+            item.setOwner(chest);
+            inventory.itemSlots.set(i, item);
+        }
+        chest.addComponent(inventory);
 
         return chest;
     }
 
-    @Command(shortDescription = "Places items in a line", runOnServer = true)
-    public String jsPlaceInventory(@Sender EntityRef client) {
+    /**
+     * Places every block item of the inventory in front of the player, in a line (the default) or in a square grid.
+     * Supply chests go in a row of their own. Everything is written to the world at once and the placement events are
+     * sent afterwards; large inventories are placed over several ticks.
+     */
+    @Command(shortDescription = "Places the block items of your inventory in a line or grid", runOnServer = true)
+    public String jsPlaceInventory(@CommandParam(value = "layout", required = false) String layout,
+                                   @Sender EntityRef client) {
+        boolean grid = layout != null && layout.equalsIgnoreCase("grid");
+        if (layout != null && !grid && !layout.equalsIgnoreCase("line")) {
+            return "Unknown layout " + layout + ", use line or grid";
+        }
+
         EntityRef character = client.getComponent(ClientComponent.class).character;
         LocationComponent locationComponent = character.getComponent(LocationComponent.class);
         Vector3i characterPos = new Vector3i(locationComponent.getWorldPosition(new Vector3f()).add(.5f, .5f, .5f),
             RoundingMode.FLOOR);
 
-        int itemsPlaced = 0;
-        int supplyChestsPlaced = 0;
+        List<EntityRef> blockItems = new ArrayList<>();
+        int chests = 0;
         for (EntityRef item : ExtendedInventoryManager.iterateItems(inventoryManager, character)) {
             BlockItemComponent blockItemComponent = item.getComponent(BlockItemComponent.class);
             if (blockItemComponent != null) {
-                Vector3i pos = new Vector3i(characterPos.x + itemsPlaced * 2 + 2, characterPos.y, characterPos.z);
-                if (blockItemComponent.blockFamily.getURI().equals(new BlockUri("CoreAdvancedAssets:Chest"))) {
-                    pos = new Vector3i(pos.x - 2, pos.y, pos.z + 2);
-                    supplyChestsPlaced++;
-                } else {
-                    itemsPlaced++;
+                blockItems.add(item);
+                if (blockItemComponent.blockFamily.getURI().equals(CHEST_URI)) {
+                    chests++;
                 }
+            }
+        }
+
+        int columns = grid ? (int) Math.ceil(Math.sqrt(blockItems.size() - chests)) : Integer.MAX_VALUE;
+        int itemsPlaced = 0;
+        int supplyChestsPlaced = 0;
+        List<Placement> placements = new ArrayList<>(blockItems.size());
+        for (EntityRef item : blockItems) {
+            BlockItemComponent blockItemComponent = item.getComponent(BlockItemComponent.class);
+            Vector3i pos;
+            if (blockItemComponent.blockFamily.getURI().equals(CHEST_URI)) {
+                pos = grid
+                    ? new Vector3i(characterPos.x + supplyChestsPlaced * SPACING + SPACING, characterPos.y, characterPos.z - SPACING)
+                    : new Vector3i(characterPos.x + itemsPlaced * SPACING, characterPos.y, characterPos.z + SPACING);
+                supplyChestsPlaced++;
+            } else {
+                pos = new Vector3i(characterPos.x + itemsPlaced % columns * SPACING + SPACING, characterPos.y,
+                    characterPos.z + itemsPlaced / columns * SPACING);
+                itemsPlaced++;
+            }
+            placements.add(new Placement(item, character, pos, blockItemComponent.blockFamily.getArchetypeBlock()));
+        }
+
+        if (pendingPlacements.isEmpty() && placements.size() <= PLACEMENTS_PER_TICK) {
+            place(placements);
+            return itemsPlaced + " blocks placed";
+        }
+        pendingPlacements.addAll(placements);
+        return itemsPlaced + " blocks and " + supplyChestsPlaced + " supply chests queued, placing "
+            + PLACEMENTS_PER_TICK + " per tick";
+    }
+
+    @Override
+    public void update(float delta) {
+        grantPending();
+        if (pendingPlacements.isEmpty()) {
+            return;
+        }
+        List<Placement> batch = new ArrayList<>(Math.min(pendingPlacements.size(), PLACEMENTS_PER_TICK));
+        while (batch.size() < PLACEMENTS_PER_TICK && !pendingPlacements.isEmpty()) {
+            batch.add(pendingPlacements.poll());
+        }
+        place(batch);
+    }
 
-                worldProvider.setBlock(pos, blockItemComponent.blockFamily.getArchetypeBlock());
-                item.send(new OnBlockItemPlaced(pos, blockEntityRegistry.getBlockEntityAt(pos), EntityRef.NULL));
-                item.destroy();
+    /**
+     * Writes all blocks in one bulk update, then lets the items know where they went and uses them up. Items that are
+     * no longer in the inventory they were queued from, e.g. because they were dropped or moved into a chest meanwhile,
+     * are skipped.
+     */
+    private void place(List<Placement> placements) {
+        List<Placement> held = new ArrayList<>(placements.size());
+        Map<Vector3ic, Block> blocks = new LinkedHashMap<>();
+        for (Placement placement : placements) {
+            if (placement.item.exists() && placement.item.getOwner().equals(placement.owner)) {
+                held.add(placement);
+                blocks.put(placement.position, placement.block);
             }
         }
+        if (blocks.isEmpty()) {
+            return;
+        }
+        worldProvider.setBlocks(blocks);
+
+        for (Placement placement : held) {
+            placement.item.send(new OnBlockItemPlaced(placement.position,
+                blockEntityRegistry.getBlockEntityAt(placement.position), EntityRef.NULL));
+            placement.item.destroy();
+        }
+    }
+
+    private static final class Grant {
+        private final EntityRef player;
+        private final StarterPack pack;
+        /**
+         * The next supply chest, or item after all supply chests, to hand out.
+         */
+        private int next;
 
-        return itemsPlaced + " blocks placed";
+        Grant(EntityRef player, StarterPack pack) {
+            this.player = player;
+            this.pack = pack;
+        }
+
+        boolean isDone() {
+            return next == pack.size();
+        }
+    }
+
+    private static final class Placement {
+        private final EntityRef item;
+        /**
+         * The character whose inventory held the item when it was queued.
+         */
+        private final EntityRef owner;
+        private final Vector3ic position;
+        private final Block block;
+
+        Placement(EntityRef item, EntityRef owner, Vector3ic position, Block block) {
+            this.item = item;
+            this.owner = owner;
+            this.position = position;
+            this.block = block;
+        }
     }
 }
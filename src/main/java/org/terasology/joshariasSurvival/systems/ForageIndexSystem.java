@@ -0,0 +1,207 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import org.joml.RoundingMode;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.event.ReceiveEvent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.game.Game;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.logic.console.commandSystem.annotations.Sender;
+import org.terasology.engine.logic.health.DoDestroyEvent;
+import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.engine.network.ClientComponent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.registry.Share;
+import org.terasology.engine.world.WorldComponent;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.engine.world.chunks.event.BeforeChunkUnload;
+import org.terasology.engine.world.chunks.event.OnChunkGenerated;
+import org.terasology.engine.world.chunks.event.OnChunkLoaded;
+import org.terasology.joshariasSurvival.world.ForagableFoodType;
+import org.terasology.joshariasSurvival.world.ForagableFoodTypes;
+import org.terasology.joshariasSurvival.world.ForageIndex;
+import org.terasology.joshariasSurvival.world.RegionFileStore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Owns the {@link ForageIndex} of the current game, keeps it up to date when forage is taken or grows back, and answers
+ * {@code jsFindForage}.
+ * <p>
+ * The index and the types it refers to are put into the game's context for the rasterizer to record into. The entries of
+ * each chunk are persisted in a {@link RegionFileStore} in the game's save directory: they are handed to the store when
+ * the chunk is generated and whenever they change, and the store writes the changed regions when the game saves. The
+ * entries of a chunk are read back when it loads and dropped from the index when it unloads, so the index only ever
+ * covers the loaded world.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+@Share(ForageIndexSystem.class)
+public class ForageIndexSystem extends BaseComponentSystem {
+    private static final Logger logger = LoggerFactory.getLogger(ForageIndexSystem.class);
+
+    private static final int DEFAULT_RESULTS = 5;
+    private static final String STORE_DIRECTORY = "forage-index";
+
+    @In
+    private Game game;
+    @In
+    private Context context;
+
+    private final ForageIndex index = new ForageIndex();
+    private RegionFileStore store;
+    private ForagableFoodTypes foodTypes;
+
+    @Override
+    public void initialise() {
+        foodTypes = ForagableFoodTypes.load();
+        store = new RegionFileStore(PathManager.getInstance().getSavePath(game.getName()).resolve(STORE_DIRECTORY));
+        // the world generator is set up after the systems, and picks the types and the index up from the context
+        context.put(ForagableFoodTypes.class, foodTypes);
+        context.put(ForageIndex.class, index);
+    }
+
+    /**
+     * @return the foragable food types of the current game, which the index's type ids refer to
+     */
+    public ForagableFoodTypes getFoodTypes() {
+        return foodTypes;
+    }
+
+    /**
+     * @return the type id of the generated placement at the position, or -1 if there is none or its chunk is not loaded
+     */
+    public int typeIdAt(Vector3ic position) {
+        return index.typeIdAt(position.x(), position.y(), position.z());
+    }
+
+    /**
+     * Records a placement, e.g. one that grew back, and persists it with its chunk.
+     */
+    public void add(Vector3ic position, int typeId) {
+        index.add(position.x(), position.y(), position.z(), typeId);
+        saveChunk(chunkOf(position));
+    }
+
+    @ReceiveEvent(components = WorldComponent.class)
+    public void onChunkGenerated(OnChunkGenerated event, EntityRef world) {
+        saveChunk(new Vector3i(event.getChunkPos()));
+    }
+
+    @ReceiveEvent(components = WorldComponent.class)
+    public void onChunkLoaded(OnChunkLoaded event, EntityRef world) {
+        Vector3ic chunk = event.getChunkPos();
+        // a chunk generated just now was recorded by the rasterizer and handed to the store already
+        if (store.isLoaded(chunk.x(), chunk.y(), chunk.z())) {
+            return;
+        }
+        try {
+            byte[] data = store.load(chunk.x(), chunk.y(), chunk.z());
+            if (data != null) {
+                index.load(chunk.x(), chunk.y(), chunk.z(), data, this::typeIdOf);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read the foragable food of chunk {}, it is not indexed", chunk, e);
+        }
+    }
+
+    @ReceiveEvent(components = WorldComponent.class)
+    public void onChunkUnloading(BeforeChunkUnload event, EntityRef world) {
+        Vector3ic chunk = event.getChunkPos();
+        index.forgetChunk(chunk.x(), chunk.y(), chunk.z());
+        store.unload(chunk.x(), chunk.y(), chunk.z());
+    }
+
+    @Override
+    public void preSave() {
+        try {
+            store.save();
+        } catch (IOException e) {
+            logger.error("Could not save the forage index", e);
+        }
+    }
+
+    @ReceiveEvent
+    public void onDestroyed(DoDestroyEvent event, EntityRef entity, BlockComponent blockComponent) {
+        Vector3ic position = blockComponent.getPosition();
+        if (index.remove(position.x(), position.y(), position.z())) {
+            saveChunk(chunkOf(position));
+        }
+    }
+
+    @Command(shortDescription = "Lists the closest foragable food, optionally of one type", runOnServer = true)
+    public String jsFindForage(@CommandParam(value = "type", required = false) String type,
+                               @CommandParam(value = "count", required = false) Integer count,
+                               @Sender EntityRef client) {
+        EntityRef character = client.getComponent(ClientComponent.class).character;
+        LocationComponent location = character.getComponent(LocationComponent.class);
+        if (location == null) {
+            return "You have no position to search from";
+        }
+        Vector3i position = new Vector3i(location.getWorldPosition(new Vector3f()), RoundingMode.FLOOR);
+
+        IntPredicate filter = typeFilter(type);
+        List<ForageIndex.Hit> hits = index.findNearest(position.x, position.y, position.z,
+                count != null ? count : DEFAULT_RESULTS, filter);
+        if (hits.isEmpty()) {
+            return "No foragable food " + (type != null ? "matching " + type + " " : "") + "is known in the loaded world";
+        }
+
+        StringBuilder result = new StringBuilder();
+        for (ForageIndex.Hit hit : hits) {
+            result.append(foodTypes.get(hit.getTypeId()).getName())
+                    .append(" at (").append(hit.getX()).append(", ").append(hit.getY()).append(", ").append(hit.getZ())
+                    .append("), ").append(Math.round(Math.sqrt(hit.getDistanceSquared()))).append(" blocks away\n");
+        }
+        return result.toString().trim();
+    }
+
+    /**
+     * Matches type names by a case-insensitive part, e.g. "rock" for {@code JoshariasSurvival:ForagableRock}.
+     */
+    private IntPredicate typeFilter(String type) {
+        if (type == null) {
+            return id -> id < foodTypes.size();
+        }
+        String part = type.toLowerCase();
+        return id -> id < foodTypes.size() && foodTypes.get(id).getName().toLowerCase().contains(part);
+    }
+
+    /**
+     * Hands the entries of a chunk to the store, which writes them with the next save.
+     */
+    private void saveChunk(Vector3i chunk) {
+        try {
+            store.put(chunk.x, chunk.y, chunk.z, index.save(chunk.x, chunk.y, chunk.z, foodTypes));
+        } catch (IOException e) {
+            logger.error("Could not read the forage index region of chunk {}, the chunk's changes are not saved", chunk, e);
+        }
+    }
+
+    private static Vector3i chunkOf(Vector3ic position) {
+        return new Vector3i(position.x() >> Chunks.POWER_X, position.y() >> Chunks.POWER_Y, position.z() >> Chunks.POWER_Z);
+    }
+
+    private int typeIdOf(String name) {
+        for (ForagableFoodType type : foodTypes.getTypes()) {
+            if (type.getName().equals(name)) {
+                return type.getId();
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,118 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import com.google.common.collect.Maps;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.event.EventPriority;
+import org.terasology.engine.entitySystem.event.ReceiveEvent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.logic.characters.events.AttackEvent;
+import org.terasology.engine.logic.common.ActivateEvent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.BlockUri;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.joshariasSurvival.world.ForagableFoodType;
+
+import java.util.Map;
+
+/**
+ * Turns generated foragable blocks into their full block entities the first time they are needed.
+ * <p>
+ * The world generator places plain blocks without an entity prefab (see
+ * {@link org.terasology.joshariasSurvival.world.ForagableFoodDefinitionComponent#materializedBlocks}), so untouched
+ * bushes cost no entities, memory or save space. When a player activates or attacks one, it is replaced by the block
+ * family carrying the entity prefab and the event is sent again to the new block entity, which then behaves exactly like
+ * a bush placed by any other means.
+ * <p>
+ * The placed families, e.g. {@code JoshaberryBushWild}, deliberately have no entity prefab: a block with one gets an
+ * entity as soon as its chunk loads, which is exactly the cost the placeholder avoids. Nothing but a player needs the
+ * entity of a wild bush; a regrown one is a placeholder again (see {@code RegrowthSystem}).
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class ForageMaterializationSystem extends BaseComponentSystem {
+    private static final Logger logger = LoggerFactory.getLogger(ForageMaterializationSystem.class);
+
+    @In
+    private WorldProvider worldProvider;
+    @In
+    private BlockManager blockManager;
+    @In
+    private BlockEntityRegistry blockEntityRegistry;
+    @In
+    private ForageIndexSystem forageIndexSystem;
+
+    private final Map<BlockUri, Block> materializations = Maps.newHashMap();
+
+    @Override
+    public void postBegin() {
+        for (ForagableFoodType type : forageIndexSystem.getFoodTypes().getTypes()) {
+            for (Map.Entry<String, String> entry : type.getMaterializedBlocks().entrySet()) {
+                BlockFamily placed = blockManager.getBlockFamily(entry.getKey());
+                BlockFamily materialized = blockManager.getBlockFamily(entry.getValue());
+                if (placed == null || materialized == null) {
+                    logger.warn("Foragable food type {} materializes unknown blocks {} -> {}", type, entry.getKey(), entry.getValue());
+                    continue;
+                }
+                materializations.put(placed.getURI(), materialized.getArchetypeBlock());
+            }
+        }
+    }
+
+    /**
+     * @return whether the block is a generated placeholder that {@link #materialize} would replace
+     */
+    private boolean isPlaceholder(Block block) {
+        return materializations.containsKey(block.getBlockFamily().getURI());
+    }
+
+    /**
+     * Replaces the placeholder at the position with its full block.
+     *
+     * @return the block entity of the full block, or {@link EntityRef#NULL} if there is no placeholder there
+     */
+    private EntityRef materialize(Vector3ic position) {
+        Block target = materializations.get(worldProvider.getBlock(position).getBlockFamily().getURI());
+        if (target == null) {
+            return EntityRef.NULL;
+        }
+        worldProvider.setBlock(position, target);
+        return blockEntityRegistry.getBlockEntityAt(position);
+    }
+
+    @ReceiveEvent(components = BlockComponent.class, priority = EventPriority.PRIORITY_CRITICAL)
+    public void onActivate(ActivateEvent event, EntityRef entity, BlockComponent blockComponent) {
+        if (!isPlaceholder(blockComponent.getBlock())) {
+            return;
+        }
+        EntityRef materialized = materialize(new Vector3i(blockComponent.getPosition()));
+        if (materialized.exists()) {
+            event.consume();
+            materialized.send(new ActivateEvent(materialized, event.getInstigator(), event.getOrigin(), event.getDirection(),
+                    event.getHitPosition(), event.getHitNormal(), event.getActivationId()));
+        }
+    }
+
+    @ReceiveEvent(components = BlockComponent.class, priority = EventPriority.PRIORITY_CRITICAL)
+    public void onAttack(AttackEvent event, EntityRef entity, BlockComponent blockComponent) {
+        if (!isPlaceholder(blockComponent.getBlock())) {
+            return;
+        }
+        EntityRef materialized = materialize(new Vector3i(blockComponent.getPosition()));
+        if (materialized.exists()) {
+            event.consume();
+            materialized.send(new AttackEvent(event.getInstigator(), event.getDirectCause()));
+        }
+    }
+}
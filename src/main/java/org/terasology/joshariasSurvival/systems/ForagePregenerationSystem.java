@@ -0,0 +1,358 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import com.google.gson.Gson;
+import org.joml.Vector3fc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.context.Context;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.game.Game;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.engine.world.generation.World;
+import org.terasology.engine.world.generator.WorldGenerator;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.joshariasSurvival.world.ForagableFoodFacet;
+import org.terasology.joshariasSurvival.world.ForagePregenCache;
+import org.terasology.joshariasSurvival.world.ForagePregenCacheHolder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pregenerates the foraging placements of the chunks around spawn into a {@link ForagePregenCache}, so that the
+ * rasterizer does not need to run the provider for them when players spread out. The open cache is handed to the
+ * rasterizer through a {@link ForagePregenCacheHolder} in the game's context.
+ * <p>
+ * The regions are generated through the world generator on a fork-join pool, leaving one core to the game. The cache is
+ * kept in the game's save directory, keyed by the world generator, its seed, sea level and configuration and the
+ * foragable food types, so a changed world empties it instead of placing stale food. The key is computed from those
+ * settings, without generating anything.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class ForagePregenerationSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final Logger logger = LoggerFactory.getLogger(ForagePregenerationSystem.class);
+
+    private static final int DEFAULT_RADIUS = 16;
+    private static final int MAX_RADIUS = 256;
+    /**
+     * Chunk layers pregenerated below and above the one holding sea level, enough for the surface and shallow caves.
+     */
+    private static final int LAYERS_BELOW = 2;
+    private static final int LAYERS_ABOVE = 2;
+    /**
+     * Regions generated by one fork-join task before it stops splitting.
+     */
+    private static final int BATCH_REGIONS = 8;
+    private static final float LOG_INTERVAL = 5;
+    /**
+     * Seconds to wait for the running regions when the game shuts down mid-run.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 10;
+    private static final String CACHE_FILE = "foraging-pregen.bin";
+
+    @In
+    private WorldGenerator worldGenerator;
+    @In
+    private Game game;
+    @In
+    private ForageIndexSystem forageIndexSystem;
+    @In
+    private Context context;
+
+    private final ForagePregenCacheHolder holder = new ForagePregenCacheHolder();
+    private ForagePregenCache cache;
+    private volatile Job job;
+    private float sinceLastLog;
+
+    @Override
+    public void initialise() {
+        // the world generator is set up after the systems, and picks the holder up from the context
+        context.put(ForagePregenCacheHolder.class, holder);
+    }
+
+    @Override
+    public void postBegin() {
+        Path file = getCacheFile();
+        if (!Files.exists(file)) {
+            return;
+        }
+        try {
+            openCache(file);
+            logger.info("Using {} pregenerated foraging chunks from {}", cache.size(), file);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not open the foraging cache {}, generating everything", file, e);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        Job current = job;
+        if (current != null) {
+            job = null;
+            current.cancel();
+            try {
+                if (!current.pool.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                    logger.warn("Foraging pregeneration did not stop within {} s, closing its cache anyway",
+                            SHUTDOWN_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (cache != null) {
+            holder.set(null);
+            try {
+                cache.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the foraging cache", e);
+            }
+            cache = null;
+        }
+    }
+
+    @Command(shortDescription = "Pregenerates foragable food for the chunks within a radius (in chunks) of spawn",
+            runOnServer = true)
+    public String jsPregenerateForage(@CommandParam(value = "radius", required = false) Integer radius) {
+        Job current = job;
+        if (current != null && !current.isFinished()) {
+            return "Already pregenerating: " + current.describe();
+        }
+        int chunkRadius = radius != null ? radius : DEFAULT_RADIUS;
+        if (chunkRadius < 0 || chunkRadius > MAX_RADIUS) {
+            return "The radius must be between 0 and " + MAX_RADIUS + " chunks";
+        }
+
+        if (cache == null) {
+            Path file = getCacheFile();
+            try {
+                openCache(file);
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not open the foraging cache {}", file, e);
+                return "Could not open the foraging cache " + file + ": " + e.getMessage();
+            }
+        }
+
+        World world = worldGenerator.getWorld();
+        int seaLevelLayer = world.getSeaLevel() >> Chunks.POWER_Y;
+        // the point new players spawn around, or the origin if the generator has none
+        Vector3fc spawn = worldGenerator.getSpawnPosition(EntityRef.NULL);
+        int spawnX = spawn != null ? (int) Math.floor(spawn.x()) >> Chunks.POWER_X : 0;
+        int spawnZ = spawn != null ? (int) Math.floor(spawn.z()) >> Chunks.POWER_Z : 0;
+        int side = 2 * chunkRadius + 1;
+        int[] chunks = new int[side * side * (LAYERS_BELOW + LAYERS_ABOVE + 1) * 3];
+        int count = 0;
+        for (int y = seaLevelLayer - LAYERS_BELOW; y <= seaLevelLayer + LAYERS_ABOVE; y++) {
+            for (int z = spawnZ - chunkRadius; z <= spawnZ + chunkRadius; z++) {
+                for (int x = spawnX - chunkRadius; x <= spawnX + chunkRadius; x++) {
+                    if (!cache.contains(x, y, z)) {
+                        chunks[count++] = x;
+                        chunks[count++] = y;
+                        chunks[count++] = z;
+                    }
+                }
+            }
+        }
+        if (count == 0) {
+            return "All " + cache.size() + " chunks within " + chunkRadius + " chunks of spawn are pregenerated already";
+        }
+
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        Job started = new Job(world, cache, Arrays.copyOf(chunks, count), new ForkJoinPool(parallelism));
+        job = started;
+        sinceLastLog = 0;
+        started.start();
+        return "Pregenerating foragable food for " + started.total + " chunks on " + parallelism + " threads";
+    }
+
+    @Command(shortDescription = "Shows the progress of the foraging pregeneration", runOnServer = true)
+    public String jsPregenerateForageStatus() {
+        Job current = job;
+        if (current == null) {
+            return cache != null ? cache.size() + " chunks of foragable food are pregenerated" : "Nothing is pregenerated";
+        }
+        return current.describe();
+    }
+
+    @Override
+    public void update(float delta) {
+        Job current = job;
+        if (current == null) {
+            return;
+        }
+        if (current.isFinished()) {
+            job = null;
+            current.pool.shutdown();
+            cache.flush();
+            logger.info("Foraging pregeneration finished: {}", current.describe());
+            return;
+        }
+        sinceLastLog += delta;
+        if (sinceLastLog >= LOG_INTERVAL) {
+            sinceLastLog = 0;
+            logger.info("{}", current.describe());
+        }
+    }
+
+    /**
+     * Opens the cache with the key of the world as it is configured now, and lets the rasterizer use it.
+     */
+    private void openCache(Path file) throws IOException {
+        cache = ForagePregenCache.open(file, worldKey());
+        holder.set(cache);
+    }
+
+    /**
+     * Hashes everything that decides the placements: the generator and its seed, sea level and facet provider
+     * configurations (which hold the foraging densities) and the foragable food types.
+     */
+    private long worldKey() {
+        long key = worldGenerator.getUri().toString().hashCode();
+        key = 31 * key + worldGenerator.getWorldSeed().hashCode();
+        key = 31 * key + worldGenerator.getWorld().getSeaLevel();
+        Gson gson = new Gson();
+        Map<String, Component> properties = new TreeMap<>(worldGenerator.getConfigurator().getProperties());
+        for (Map.Entry<String, Component> entry : properties.entrySet()) {
+            key = 31 * key + entry.getKey().hashCode();
+            key = 31 * key + gson.toJson(entry.getValue()).hashCode();
+        }
+        key = 31 * key + forageIndexSystem.getFoodTypes().fingerprint();
+        return key;
+    }
+
+    private Path getCacheFile() {
+        return PathManager.getInstance().getSavePath(game.getName()).resolve(CACHE_FILE);
+    }
+
+    private static BlockRegion chunkRegion(int chunkX, int chunkY, int chunkZ) {
+        return new BlockRegion(chunkX << Chunks.POWER_X, chunkY << Chunks.POWER_Y, chunkZ << Chunks.POWER_Z,
+                ((chunkX + 1) << Chunks.POWER_X) - 1, ((chunkY + 1) << Chunks.POWER_Y) - 1,
+                ((chunkZ + 1) << Chunks.POWER_Z) - 1);
+    }
+
+    /**
+     * One pregeneration run, with its progress counters.
+     */
+    private static final class Job {
+        private final World world;
+        private final ForagePregenCache cache;
+        /**
+         * Chunk positions to generate, three ints each.
+         */
+        private final int[] chunks;
+        private final ForkJoinPool pool;
+        private final int total;
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile long startedAt;
+        /**
+         * Set when the game shuts down, so that no region starts after the cache is closed.
+         */
+        private volatile boolean cancelled;
+
+        Job(World world, ForagePregenCache cache, int[] chunks, ForkJoinPool pool) {
+            this.world = world;
+            this.cache = cache;
+            this.chunks = chunks;
+            this.pool = pool;
+            this.total = chunks.length / 3;
+        }
+
+        void start() {
+            startedAt = System.nanoTime();
+            pool.execute(new Batch(0, total));
+        }
+
+        void cancel() {
+            cancelled = true;
+            pool.shutdown();
+        }
+
+        boolean isFinished() {
+            return done.get() + failed.get() == total;
+        }
+
+        String describe() {
+            int finished = done.get();
+            double seconds = Math.max(1e-3, (System.nanoTime() - startedAt) / (double) TimeUnit.SECONDS.toNanos(1));
+            StringBuilder result = new StringBuilder("Pregenerated ").append(finished).append(" of ").append(total)
+                    .append(" chunks, ").append(String.format("%.1f", finished / seconds)).append(" regions/s");
+            if (failed.get() > 0) {
+                result.append(", ").append(failed.get()).append(" failed");
+            }
+            return result.toString();
+        }
+
+        private void generate(int index) {
+            if (cancelled) {
+                return;
+            }
+            int x = chunks[3 * index];
+            int y = chunks[3 * index + 1];
+            int z = chunks[3 * index + 2];
+            try {
+                ForagableFoodFacet facet = world.getWorldData(chunkRegion(x, y, z)).getFacet(ForagableFoodFacet.class);
+                cache.put(x, y, z, facet);
+                done.incrementAndGet();
+            } catch (IOException | UncheckedIOException e) {
+                if (cancelled) {
+                    return;
+                }
+                if (failed.getAndIncrement() == 0) {
+                    logger.error("Could not write pregenerated foraging chunk ({}, {}, {})", x, y, z, e);
+                }
+            } catch (RuntimeException e) {
+                if (failed.getAndIncrement() == 0) {
+                    logger.error("Could not pregenerate foraging chunk ({}, {}, {})", x, y, z, e);
+                }
+            }
+        }
+
+        /**
+         * Generates a range of chunk indices, splitting it in halves down to {@link #BATCH_REGIONS}.
+         */
+        private final class Batch extends RecursiveAction {
+            private final int from;
+            private final int to;
+
+            Batch(int from, int to) {
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (cancelled) {
+                    return;
+                }
+                if (to - from <= BATCH_REGIONS) {
+                    for (int i = from; i < to && !cancelled; i++) {
+                        generate(i);
+                    }
+                    return;
+                }
+                int middle = (from + to) >>> 1;
+                invokeAll(new Batch(from, middle), new Batch(middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+
+/**
+ * Settings of {@link ForagingMetricsSystem}, read from the {@code JoshariasSurvival:ForagingMetricsConfig} prefab.
+ * Override that prefab with a delta to change them on a server.
+ */
+public class ForagingMetricsConfigComponent implements Component<ForagingMetricsConfigComponent> {
+    /**
+     * Whether foraging world generation is instrumented from startup on.
+     */
+    public boolean enabled;
+    /**
+     * Seconds between metrics snapshots in the log while instrumented, or 0 to never log them.
+     */
+    public float logInterval;
+
+    @Override
+    public void copyFrom(ForagingMetricsConfigComponent other) {
+        this.enabled = other.enabled;
+        this.logInterval = other.logInterval;
+    }
+}
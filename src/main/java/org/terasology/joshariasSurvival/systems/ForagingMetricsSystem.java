@@ -0,0 +1,76 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.joshariasSurvival.world.ForagingMetrics;
+
+/**
+ * Controls and reports the {@link ForagingMetrics} of the world generator running on this server.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class ForagingMetricsSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final Logger logger = LoggerFactory.getLogger(ForagingMetricsSystem.class);
+
+    private static final String CONFIG_PREFAB = "JoshariasSurvival:ForagingMetricsConfig";
+
+    @In
+    private ForageIndexSystem forageIndexSystem;
+
+    private float logInterval;
+    private float sinceLastLog;
+
+    @Command(shortDescription = "Shows the foraging world generation counters and timings", runOnServer = true)
+    public String jsForagingMetrics() {
+        return ForagingMetrics.report(forageIndexSystem.getFoodTypes());
+    }
+
+    @Command(shortDescription = "Turns the foraging world generation metrics on or off", runOnServer = true)
+    public String jsForagingMetricsEnable(@CommandParam("enabled") boolean enabled) {
+        ForagingMetrics.setEnabled(enabled);
+        return "Foraging metrics " + (enabled ? "enabled" : "disabled");
+    }
+
+    @Command(shortDescription = "Clears the foraging world generation metrics", runOnServer = true)
+    public String jsForagingMetricsReset() {
+        ForagingMetrics.reset();
+        return "Foraging metrics cleared";
+    }
+
+    @Override
+    public void initialise() {
+        ForagingMetricsConfigComponent config = Assets.getPrefab(CONFIG_PREFAB)
+                .map(prefab -> prefab.getComponent(ForagingMetricsConfigComponent.class))
+                .orElseGet(ForagingMetricsConfigComponent::new);
+        logInterval = config.logInterval;
+        if (config.enabled) {
+            ForagingMetrics.setEnabled(true);
+        }
+    }
+
+    @Override
+    public void update(float delta) {
+        if (logInterval <= 0 || !ForagingMetrics.isEnabled()) {
+            return;
+        }
+        sinceLastLog += delta;
+        if (sinceLastLog >= logInterval) {
+            sinceLastLog = 0;
+            logger.info("{}", ForagingMetrics.report(forageIndexSystem.getFoodTypes()));
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        ForagingMetrics.setEnabled(false);
+    }
+}
@@ -0,0 +1,294 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.joml.RoundingMode;
+import org.joml.Vector3f;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.terasology.engine.core.Time;
+import org.terasology.engine.entitySystem.entity.EntityManager;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.BeforeDeactivateComponent;
+import org.terasology.engine.entitySystem.entity.lifecycleEvents.OnActivatedComponent;
+import org.terasology.engine.entitySystem.event.ReceiveEvent;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.logic.common.ActivateEvent;
+import org.terasology.engine.logic.health.DoDestroyEvent;
+import org.terasology.engine.logic.inventory.events.DropItemEvent;
+import org.terasology.engine.logic.location.LocationComponent;
+import org.terasology.engine.math.Side;
+import org.terasology.engine.network.ClientComponent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.engine.world.BlockEntityRegistry;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.joshariasSurvival.growth.GrowthTimeline;
+import org.terasology.joshariasSurvival.growth.LazyGrowthComponent;
+import org.terasology.joshariasSurvival.growth.LazyGrowthSeedComponent;
+import org.terasology.module.inventory.systems.InventoryManager;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Grows {@link LazyGrowthComponent} plants, an opt-in alternative to the per-plant timers of SimpleFarming bushes.
+ * <p>
+ * Joshaberry bushes grow through SimpleFarming by default. A game opts in by using the lazy variants instead, e.g.
+ * materializing wild bushes as {@code JoshaberryBushLazy} or handing out {@code JoshaberryLazySeed}; a lazy bush drops
+ * lazy seeds again.
+ * <p>
+ * A plant only stores when it was planted. Its stage is computed from that when its chunk loads and when a player uses
+ * it, so plants out of sight cost nothing. Plants within {@link #WATCH_RADIUS} chunks of a player are queued by the time
+ * of their next stage change, and each tick at most {@link #MAX_UPDATES_PER_TICK} of them get their block updated.
+ * Other loaded plants are kept per chunk and queued once a player comes close.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class LazyGrowthSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final int MAX_UPDATES_PER_TICK = 64;
+    /**
+     * Horizontal distance in chunks from a player's chunk within which plants grow visibly.
+     */
+    private static final int WATCH_RADIUS = 2;
+    private static final float WATCH_INTERVAL = 1;
+    private static final String SOIL_CATEGORY = "soil";
+
+    @In
+    private Time time;
+    @In
+    private WorldProvider worldProvider;
+    @In
+    private BlockManager blockManager;
+    @In
+    private BlockEntityRegistry blockEntityRegistry;
+    @In
+    private EntityManager entityManager;
+    @In
+    private InventoryManager inventoryManager;
+
+    private final PriorityQueue<Scheduled> queue = new PriorityQueue<>();
+    /**
+     * The queued change time per plant, to drop queue entries made stale by a harvest or a second activation.
+     */
+    private final Map<EntityRef, Long> scheduled = Maps.newHashMap();
+    /**
+     * Loaded plants that still change but are out of sight, by chunk position.
+     */
+    private final Map<Vector3i, Set<EntityRef>> dormant = Maps.newHashMap();
+    private Set<Vector3i> watched = Sets.newHashSet();
+    private float sinceWatchUpdate = WATCH_INTERVAL;
+
+    @ReceiveEvent(components = BlockComponent.class)
+    public void onPlantLoaded(OnActivatedComponent event, EntityRef plant, LazyGrowthComponent growth, BlockComponent blockComponent) {
+        long now = time.getGameTimeInMs();
+        if (growth.plantTime < 0) {
+            // placed without planting, e.g. a generated bush: it starts out fully grown
+            growth.seed = GrowthTimeline.seedFor(blockComponent.getPosition());
+            growth.plantTime = GrowthTimeline.plantTimeFor(growth, growth.stages.size() - 1, now);
+            plant.saveComponent(growth);
+        }
+        updateBlock(plant, growth, blockComponent.getPosition(), now);
+    }
+
+    @ReceiveEvent(components = LazyGrowthComponent.class)
+    public void onPlantUnloaded(BeforeDeactivateComponent event, EntityRef plant, BlockComponent blockComponent) {
+        // its queue entry is dropped when it comes up
+        scheduled.remove(plant);
+        removeDormant(plant, blockComponent.getPosition());
+    }
+
+    @ReceiveEvent(components = BlockComponent.class)
+    public void onPlantDestroyed(DoDestroyEvent event, EntityRef plant, LazyGrowthComponent growth, BlockComponent blockComponent) {
+        if (growth.seedItem == null) {
+            return;
+        }
+        EntityRef seed = entityManager.create(growth.seedItem);
+        if (!inventoryManager.giveItem(event.getInstigator(), plant, seed)) {
+            seed.send(new DropItemEvent(new Vector3f(blockComponent.getPosition()).add(0, 0.5f, 0)));
+        }
+    }
+
+    @ReceiveEvent(components = BlockComponent.class)
+    public void onHarvest(ActivateEvent event, EntityRef plant, LazyGrowthComponent growth, BlockComponent blockComponent) {
+        long now = time.getGameTimeInMs();
+        int finalStage = growth.stages.size() - 1;
+        if (GrowthTimeline.stageAt(growth, now) < finalStage || growth.produce == null) {
+            updateBlock(plant, growth, blockComponent.getPosition(), now);
+            return;
+        }
+
+        EntityRef produce = entityManager.create(growth.produce);
+        if (!inventoryManager.giveItem(event.getInstigator(), plant, produce)) {
+            produce.destroy();
+            return;
+        }
+        event.consume();
+
+        growth.plantTime = GrowthTimeline.plantTimeFor(growth, growth.harvestStage, now);
+        plant.saveComponent(growth);
+        updateBlock(plant, growth, blockComponent.getPosition(), now);
+    }
+
+    @ReceiveEvent
+    public void onPlant(ActivateEvent event, EntityRef seed, LazyGrowthSeedComponent seedComponent) {
+        BlockComponent ground = event.getTarget().getComponent(BlockComponent.class);
+        Optional<Prefab> plantPrefab = Assets.getPrefab(seedComponent.plant);
+        if (ground == null || !plantPrefab.isPresent() || Side.inDirection(event.getHitNormal()) != Side.TOP) {
+            return;
+        }
+        // the same rule as SimpleFarming seeds: only on top of soil
+        if (!ground.getBlock().getBlockFamily().hasCategory(SOIL_CATEGORY)) {
+            return;
+        }
+        LazyGrowthComponent template = plantPrefab.get().getComponent(LazyGrowthComponent.class);
+        if (template == null || template.stages.isEmpty()) {
+            return;
+        }
+
+        Vector3i position = new Vector3i(ground.getPosition()).add(0, 1, 0);
+        if (worldProvider.getBlock(position).getId() != BlockManager.AIR_ID) {
+            return;
+        }
+        event.consume();
+
+        LazyGrowthComponent growth = new LazyGrowthComponent();
+        growth.copyFrom(template);
+        growth.plantTime = time.getGameTimeInMs();
+        growth.seed = GrowthTimeline.seedFor(position) ^ growth.plantTime;
+
+        worldProvider.setBlock(position, blockManager.getBlock(growth.stages.get(0)));
+        EntityRef plant = blockEntityRegistry.getBlockEntityAt(position);
+        plant.addOrSaveComponent(growth);
+        updateBlock(plant, growth, position, growth.plantTime);
+        inventoryManager.removeItem(event.getInstigator(), event.getInstigator(), seed, true, 1);
+    }
+
+    @Override
+    public void update(float delta) {
+        long now = time.getGameTimeInMs();
+        sinceWatchUpdate += delta;
+        if (sinceWatchUpdate >= WATCH_INTERVAL) {
+            sinceWatchUpdate = 0;
+            updateWatched(now);
+        }
+
+        for (int updates = 0; updates < MAX_UPDATES_PER_TICK && !queue.isEmpty() && queue.peek().time <= now; updates++) {
+            Scheduled next = queue.poll();
+            Long current = scheduled.get(next.plant);
+            if (current == null || current != next.time) {
+                continue;
+            }
+            scheduled.remove(next.plant);
+
+            LazyGrowthComponent growth = next.plant.getComponent(LazyGrowthComponent.class);
+            BlockComponent blockComponent = next.plant.getComponent(BlockComponent.class);
+            if (next.plant.isActive() && growth != null && blockComponent != null) {
+                updateBlock(next.plant, growth, blockComponent.getPosition(), now);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the chunks near players, and queues the dormant plants of chunks that just came into sight.
+     */
+    private void updateWatched(long now) {
+        Set<Vector3i> current = Sets.newHashSet();
+        for (EntityRef client : entityManager.getEntitiesWith(ClientComponent.class)) {
+            EntityRef character = client.getComponent(ClientComponent.class).character;
+            LocationComponent location = character.getComponent(LocationComponent.class);
+            if (location == null) {
+                continue;
+            }
+            Vector3i center = chunkOf(new Vector3i(location.getWorldPosition(new Vector3f()), RoundingMode.FLOOR));
+            for (int y = -1; y <= 1; y++) {
+                for (int z = -WATCH_RADIUS; z <= WATCH_RADIUS; z++) {
+                    for (int x = -WATCH_RADIUS; x <= WATCH_RADIUS; x++) {
+                        current.add(new Vector3i(center).add(x, y, z));
+                    }
+                }
+            }
+        }
+
+        for (Vector3i chunk : current) {
+            if (watched.contains(chunk)) {
+                continue;
+            }
+            Set<EntityRef> plants = dormant.remove(chunk);
+            if (plants != null) {
+                for (EntityRef plant : plants) {
+                    // due now, so the per-tick budget covers them as well
+                    scheduled.put(plant, now);
+                    queue.add(new Scheduled(now, plant));
+                }
+            }
+        }
+        watched = current;
+    }
+
+    /**
+     * Shows the current stage of the plant and queues its next change, if any.
+     */
+    private void updateBlock(EntityRef plant, LazyGrowthComponent growth, Vector3ic position, long now) {
+        if (growth.stages.isEmpty()) {
+            return;
+        }
+        Block block = blockManager.getBlock(growth.stages.get(GrowthTimeline.stageAt(growth, now)));
+        if (worldProvider.getBlock(position) != block) {
+            blockEntityRegistry.setBlockRetainComponent(position, block, LazyGrowthComponent.class);
+        }
+
+        long nextChange = GrowthTimeline.nextChange(growth, now);
+        if (nextChange == Long.MAX_VALUE) {
+            scheduled.remove(plant);
+            removeDormant(plant, position);
+        } else if (watched.contains(chunkOf(position))) {
+            removeDormant(plant, position);
+            Long current = scheduled.put(plant, nextChange);
+            if (current == null || current != nextChange) {
+                queue.add(new Scheduled(nextChange, plant));
+            }
+        } else {
+            scheduled.remove(plant);
+            dormant.computeIfAbsent(chunkOf(position), chunk -> Sets.newHashSet()).add(plant);
+        }
+    }
+
+    private void removeDormant(EntityRef plant, Vector3ic position) {
+        Vector3i chunk = chunkOf(position);
+        Set<EntityRef> plants = dormant.get(chunk);
+        if (plants != null && plants.remove(plant) && plants.isEmpty()) {
+            dormant.remove(chunk);
+        }
+    }
+
+    private static Vector3i chunkOf(Vector3ic position) {
+        return new Vector3i(position.x() >> Chunks.POWER_X, position.y() >> Chunks.POWER_Y, position.z() >> Chunks.POWER_Z);
+    }
+
+    private static final class Scheduled implements Comparable<Scheduled> {
+        private final long time;
+        private final EntityRef plant;
+
+        Scheduled(long time, EntityRef plant) {
+            this.time = time;
+            this.plant = plant;
+        }
+
+        @Override
+        public int compareTo(Scheduled other) {
+            return Long.compare(time, other.time);
+        }
+    }
+}
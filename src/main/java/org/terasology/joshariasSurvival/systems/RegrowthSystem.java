@@ -0,0 +1,243 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.core.Time;
+import org.terasology.engine.entitySystem.entity.EntityRef;
+import org.terasology.engine.entitySystem.event.EventPriority;
+import org.terasology.engine.entitySystem.event.ReceiveEvent;
+import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
+import org.terasology.engine.entitySystem.systems.RegisterMode;
+import org.terasology.engine.entitySystem.systems.RegisterSystem;
+import org.terasology.engine.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.engine.game.Game;
+import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.health.DoDestroyEvent;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.world.WorldComponent;
+import org.terasology.engine.world.WorldProvider;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockComponent;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.BlockUri;
+import org.terasology.engine.world.block.family.BlockFamily;
+import org.terasology.engine.world.chunks.event.BeforeChunkUnload;
+import org.terasology.engine.world.chunks.event.OnChunkLoaded;
+import org.terasology.joshariasSurvival.growth.RegrowthSchedule;
+import org.terasology.joshariasSurvival.world.ForagableFoodType;
+import org.terasology.joshariasSurvival.world.RegionFileStore;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lets foraged rocks and bushes grow back where they were taken.
+ * <p>
+ * Destroying a block placed by the foraging generator (or the block it materialized into) schedules its regrowth after a
+ * delay between the type's {@code regrowMinTime} and {@code regrowMaxTime}, picked from the position so it is
+ * deterministic. Regrowths are kept in a {@link RegrowthSchedule} with a resolution of {@link #TICK_MS}, only while
+ * their chunk is loaded: they are handed to a {@link RegionFileStore} in the game's save directory when the chunk
+ * unloads or the game saves, and those that expired meanwhile are applied in a batch when the chunk loads again. A
+ * regrowth is dropped if the spot is no longer air.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class RegrowthSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    private static final Logger logger = LoggerFactory.getLogger(RegrowthSystem.class);
+
+    static final long TICK_MS = 1000;
+    private static final String STORE_DIRECTORY = "regrowth";
+
+    @In
+    private Time time;
+    @In
+    private WorldProvider worldProvider;
+    @In
+    private BlockManager blockManager;
+    @In
+    private Game game;
+    @In
+    private ForageIndexSystem forageIndexSystem;
+
+    /**
+     * The blocks that grow back, indexed by the value stored in the schedule, and their URIs for persistence.
+     */
+    private final List<Block> regrowBlocks = Lists.newArrayList();
+    private final List<String> regrowBlockNames = Lists.newArrayList();
+    private final List<Integer> regrowTypeIds = Lists.newArrayList();
+    private final Map<BlockUri, Rule> rules = Maps.newHashMap();
+
+    private RegrowthSchedule schedule;
+    private RegionFileStore store;
+
+    @Override
+    public void postBegin() {
+        for (ForagableFoodType type : forageIndexSystem.getFoodTypes().getTypes()) {
+            if (!type.isRegrowing()) {
+                continue;
+            }
+            for (String uri : type.getBlocks()) {
+                BlockFamily placed = blockManager.getBlockFamily(uri);
+                if (placed == null) {
+                    continue;
+                }
+                Rule rule = new Rule(regrowBlocks.size(), type.getRegrowMinTime(), type.getRegrowMaxTime());
+                regrowBlocks.add(placed.getArchetypeBlock());
+                regrowBlockNames.add(placed.getURI().toString());
+                regrowTypeIds.add(type.getId());
+                rules.put(placed.getURI(), rule);
+
+                String materialized = type.getMaterializedBlocks().get(uri);
+                BlockFamily materializedFamily = materialized != null ? blockManager.getBlockFamily(materialized) : null;
+                if (materializedFamily != null) {
+                    rules.put(materializedFamily.getURI(), rule);
+                }
+            }
+        }
+
+        store = new RegionFileStore(PathManager.getInstance().getSavePath(game.getName()).resolve(STORE_DIRECTORY));
+        schedule = new RegrowthSchedule(currentTick());
+    }
+
+    @Override
+    public void preSave() {
+        if (schedule == null) {
+            return;
+        }
+        schedule.writeChanged(regrowBlockNames, this::put);
+        try {
+            store.save();
+        } catch (IOException e) {
+            logger.error("Could not save the pending regrowths", e);
+        }
+    }
+
+    /**
+     * Runs before {@link ForageIndexSystem} forgets the spot, as only spots the index knows of were generated; blocks of
+     * the same family placed or planted by players do not grow back.
+     */
+    @ReceiveEvent(priority = EventPriority.PRIORITY_HIGH)
+    public void onForaged(DoDestroyEvent event, EntityRef entity, BlockComponent blockComponent) {
+        Rule rule = rules.get(blockComponent.getBlock().getBlockFamily().getURI());
+        if (rule == null || schedule == null) {
+            return;
+        }
+        Vector3ic position = blockComponent.getPosition();
+        if (forageIndexSystem.typeIdAt(position) != regrowTypeIds.get(rule.block)) {
+            return;
+        }
+        long packed = RegrowthSchedule.pack(position.x(), position.y(), position.z());
+        long delay = rule.minTime + Math.floorMod(Long.hashCode(packed * 0x9e3779b97f4a7c15L), rule.maxTime - rule.minTime + 1);
+        schedule.add(packed, (time.getGameTimeInMs() + delay) / TICK_MS, rule.block);
+    }
+
+    @ReceiveEvent(components = WorldComponent.class)
+    public void onChunkLoaded(OnChunkLoaded event, EntityRef world) {
+        if (schedule == null) {
+            return;
+        }
+        Vector3ic chunk = event.getChunkPos();
+        Map<Vector3ic, Integer> batch = Maps.newHashMap();
+        try {
+            schedule.loadChunk(RegrowthSchedule.pack(chunk.x(), chunk.y(), chunk.z()),
+                    store.load(chunk.x(), chunk.y(), chunk.z()), regrowBlockNames::indexOf,
+                    (position, due, value) -> collect(batch, position, value));
+        } catch (IOException e) {
+            logger.error("Could not read the pending regrowths of chunk {}, they are lost", chunk, e);
+        }
+        apply(batch);
+    }
+
+    @ReceiveEvent(components = WorldComponent.class)
+    public void onChunkUnloading(BeforeChunkUnload event, EntityRef world) {
+        if (schedule == null) {
+            return;
+        }
+        Vector3ic chunk = event.getChunkPos();
+        schedule.unloadChunk(RegrowthSchedule.pack(chunk.x(), chunk.y(), chunk.z()), regrowBlockNames, this::put);
+        store.unload(chunk.x(), chunk.y(), chunk.z());
+    }
+
+    @Override
+    public void update(float delta) {
+        long tick = currentTick();
+        if (schedule == null || tick <= schedule.getCurrentTick()) {
+            return;
+        }
+        Map<Vector3ic, Integer> batch = Maps.newHashMap();
+        schedule.advanceTo(tick, (position, due, value) -> collect(batch, position, value));
+        apply(batch);
+    }
+
+    @Command(shortDescription = "Shows how many foraged spots are waiting to grow back", runOnServer = true)
+    public String jsRegrowthStatus() {
+        if (schedule == null) {
+            return "Regrowth has not started yet";
+        }
+        return schedule.size() + " foraged spots in " + schedule.getChunkCount()
+                + " loaded chunks are waiting to grow back";
+    }
+
+    private long currentTick() {
+        return time.getGameTimeInMs() / TICK_MS;
+    }
+
+    /**
+     * Hands the pending regrowths of a chunk to the store, which writes them with the next save.
+     */
+    private void put(long chunk, byte[] data) {
+        int x = RegrowthSchedule.unpackX(chunk);
+        int y = RegrowthSchedule.unpackY(chunk);
+        int z = RegrowthSchedule.unpackZ(chunk);
+        try {
+            store.put(x, y, z, data);
+        } catch (IOException e) {
+            logger.error("Could not read the regrowth region of chunk ({}, {}, {}), its regrowths are not saved", x, y, z, e);
+        }
+    }
+
+    private void collect(Map<Vector3ic, Integer> batch, long position, int value) {
+        if (value < regrowBlocks.size()) {
+            batch.put(new Vector3i(RegrowthSchedule.unpackX(position), RegrowthSchedule.unpackY(position),
+                    RegrowthSchedule.unpackZ(position)), value);
+        }
+    }
+
+    /**
+     * Places the regrown blocks where the spot is still air, and puts them back into the forage index.
+     */
+    private void apply(Map<Vector3ic, Integer> batch) {
+        Map<Vector3ic, Block> blocks = Maps.newHashMapWithExpectedSize(batch.size());
+        for (Map.Entry<Vector3ic, Integer> entry : batch.entrySet()) {
+            if (worldProvider.getBlock(entry.getKey()).getId() == BlockManager.AIR_ID) {
+                blocks.put(entry.getKey(), regrowBlocks.get(entry.getValue()));
+            }
+        }
+        if (blocks.isEmpty()) {
+            return;
+        }
+        worldProvider.setBlocks(blocks);
+        for (Vector3ic position : blocks.keySet()) {
+            forageIndexSystem.add(position, regrowTypeIds.get(batch.get(position)));
+        }
+    }
+
+    private static final class Rule {
+        private final int block;
+        private final long minTime;
+        private final long maxTime;
+
+        Rule(int block, long minTime, long maxTime) {
+            this.block = block;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+        }
+    }
+}
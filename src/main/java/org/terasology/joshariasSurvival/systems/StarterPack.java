@@ -0,0 +1,130 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import com.google.common.collect.ImmutableList;
+import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.family.BlockFamily;
+
+import java.util.List;
+
+/**
+ * The contents of a starter pack with every block family already looked up, so that handing it out only creates
+ * entities. Built once per pack by {@link DemoSystem} and shared by all grants.
+ */
+final class StarterPack {
+    private final List<List<Item>> supplyChests;
+    private final List<Item> items;
+
+    private StarterPack(List<List<Item>> supplyChests, List<Item> items) {
+        this.supplyChests = supplyChests;
+        this.items = items;
+    }
+
+    /**
+     * @return the contents of each supply chest
+     */
+    List<List<Item>> getSupplyChests() {
+        return supplyChests;
+    }
+
+    /**
+     * @return the items given outside of supply chests
+     */
+    List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the number of supply chests and items, which is the number of steps to hand the pack out
+     */
+    int size() {
+        return supplyChests.size() + items.size();
+    }
+
+    /**
+     * An item stack, either of a block family or of an item prefab.
+     */
+    static final class Item {
+        private final BlockFamily blockFamily;
+        private final String prefab;
+        private final int count;
+
+        private Item(BlockFamily blockFamily, String prefab, int count) {
+            this.blockFamily = blockFamily;
+            this.prefab = prefab;
+            this.count = count;
+        }
+
+        /**
+         * @return the block family of a block item, or null for an item prefab
+         */
+        BlockFamily getBlockFamily() {
+            return blockFamily;
+        }
+
+        /**
+         * @return the item URI as understood by {@code ExtendedInventoryManager.createItem}, or null for a block item
+         */
+        String getPrefab() {
+            return prefab;
+        }
+
+        int getCount() {
+            return count;
+        }
+    }
+
+    static final class Builder {
+        private final BlockManager blockManager;
+        private final ImmutableList.Builder<List<Item>> supplyChests = ImmutableList.builder();
+        private final ImmutableList.Builder<Item> items = ImmutableList.builder();
+        private ImmutableList.Builder<Item> chest;
+
+        Builder(BlockManager blockManager) {
+            this.blockManager = blockManager;
+        }
+
+        /**
+         * Starts a new supply chest; items added after this go into it until {@link #endSupplyChest()}.
+         */
+        Builder supplyChest() {
+            chest = ImmutableList.builder();
+            return this;
+        }
+
+        Builder endSupplyChest() {
+            supplyChests.add(chest.build());
+            chest = null;
+            return this;
+        }
+
+        /**
+         * Adds a stack of block items. Unknown block families are left out, as there is no item to give for them.
+         */
+        Builder block(String family, int count) {
+            BlockFamily blockFamily = blockManager.getBlockFamily(family);
+            if (blockFamily != null) {
+                add(new Item(blockFamily, null, count));
+            }
+            return this;
+        }
+
+        Builder item(String prefab, int count) {
+            add(new Item(null, prefab, count));
+            return this;
+        }
+
+        StarterPack build() {
+            return new StarterPack(supplyChests.build(), items.build());
+        }
+
+        private void add(Item item) {
+            if (chest != null) {
+                chest.add(item);
+            } else {
+                items.add(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.systems;
+
+import org.terasology.gestalt.entitysystem.component.Component;
+
+/**
+ * Settings of {@link WorkstationDiagnosticsSystem}, read from the {@code JoshariasSurvival:WorkstationDiagnosticsConfig}
+ * prefab. Override that prefab with a delta to change them on a server.
+ */
+public class WorkstationDiagnosticsConfigComponent implements Component<WorkstationDiagnosticsConfigComponent> {
+    /**
+     * Whether headless servers analyse the crafting data in the background after startup.
+     */
+    public boolean runOnStartup = true;
+    /**
+     * Whether the startup run writes a report file with a single summary log line, instead of logging every item.
+     */
+    public boolean exportOnStartup;
+    /**
+     * Where reports are written, relative to the home directory.
+     */
+    public String exportPath = "diagnostics/crafting.jsonl";
+
+    @Override
+    public void copyFrom(WorkstationDiagnosticsConfigComponent other) {
+        this.runOnStartup = other.runOnStartup;
+        this.exportOnStartup = other.exportOnStartup;
+        this.exportPath = other.exportPath;
+    }
+}
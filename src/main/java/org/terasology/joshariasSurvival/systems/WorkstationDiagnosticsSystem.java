@@ -3,202 +3,272 @@
 
 package org.terasology.joshariasSurvival.systems;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terasology.gestalt.assets.ResourceUrn;
-import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.core.PathManager;
+import org.terasology.engine.core.module.ModuleManager;
 import org.terasology.engine.entitySystem.systems.BaseComponentSystem;
 import org.terasology.engine.entitySystem.systems.RegisterSystem;
 import org.terasology.engine.logic.console.commandSystem.annotations.Command;
+import org.terasology.engine.logic.console.commandSystem.annotations.CommandParam;
 import org.terasology.engine.network.NetworkSystem;
 import org.terasology.engine.registry.In;
 import org.terasology.engine.utilities.Assets;
-import org.terasology.inGameHelpAPI.components.ItemHelpComponent;
-import org.terasology.workstation.component.WorkstationComponent;
-import org.terasology.workstation.process.DescribeProcess;
-import org.terasology.workstation.process.ProcessPartDescription;
-import org.terasology.workstation.process.WorkstationProcess;
+import org.terasology.engine.utilities.concurrency.ShutdownTask;
+import org.terasology.engine.utilities.concurrency.Task;
+import org.terasology.engine.utilities.concurrency.TaskMaster;
+import org.terasology.gestalt.assets.ResourceUrn;
+import org.terasology.joshariasSurvival.crafting.CraftingPlanner;
+import org.terasology.joshariasSurvival.crafting.CraftingReportWriter;
+import org.terasology.joshariasSurvival.crafting.CraftingSnapshot;
+import org.terasology.joshariasSurvival.crafting.CraftingSnapshotCache;
+import org.terasology.joshariasSurvival.crafting.RecipeGraph;
 import org.terasology.workstation.system.WorkstationRegistry;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 @RegisterSystem
 public class WorkstationDiagnosticsSystem extends BaseComponentSystem {
     private static final Logger logger = LoggerFactory.getLogger(WorkstationDiagnosticsSystem.class);
 
+    private static final String CONFIG_PREFAB = "JoshariasSurvival:WorkstationDiagnosticsConfig";
+    private static final int MAX_PLAN_LINES = 40;
+
     @In
     WorkstationRegistry workstationRegistry;
     @In
     private NetworkSystem networkSystem;
+    @In
+    private ModuleManager moduleManager;
+
+    private CraftingSnapshotCache snapshots;
+    private TaskMaster<Task> taskMaster;
+    private volatile BackgroundDiagnostics backgroundDiagnostics;
 
     @Command(shortDescription = "Logs item without an output process")
     public String logItemsWithoutOutputProcess() {
-        logger.info("--- logging items without an output process");
-
-        List<String> processTypes = Assets.list(Prefab.class).stream()
-                .map(x -> Assets.get(x, Prefab.class).get())
-                .filter(x -> x.hasComponent(WorkstationComponent.class))
-                .flatMap(x -> x.getComponent(WorkstationComponent.class).supportedProcessTypes.keySet().stream())
-                .collect(Collectors.toList());
-
-        Set<ResourceUrn> knownInputs = Sets.newHashSet();
-        Set<ResourceUrn> knownOutputs = Sets.newHashSet();
-
-        for (WorkstationProcess process : workstationRegistry.getWorkstationProcesses(processTypes)) {
-            if (process instanceof DescribeProcess) {
-                DescribeProcess describeProcess = (DescribeProcess) process;
-                for (ProcessPartDescription description : describeProcess.getInputDescriptions()) {
-                    if (description.getResourceUrn() != null) {
-                        knownInputs.add(description.getResourceUrn());
-                    }
-                }
-                for (ProcessPartDescription description : describeProcess.getOutputDescriptions()) {
-                    if (description.getResourceUrn() != null) {
-                        knownOutputs.add(description.getResourceUrn());
-                    }
-                }
-            }
-        }
-
-        List<ResourceUrn> helpItems = Assets.list(Prefab.class).stream()
-                .filter(x -> Assets.get(x, Prefab.class).get().hasComponent(ItemHelpComponent.class))
-                .collect(Collectors.toList());
-        knownInputs.addAll(helpItems);
-
-        int count = 0;
-        for (ResourceUrn input : knownInputs) {
-            if (!knownOutputs.contains(input)) {
-                logger.info("{} does not have a known output process", input);
-                count++;
-            }
-        }
-
-        logger.info("--- finished logging items without an output process ({} items)", count);
+        logItemsWithoutOutputProcess(snapshots.get());
 
         return "Logged as info all items without assembly processes defined";
     }
 
     @Command(shortDescription = "Logs item crafting complexity")
     public String logItemCraftingComplexity() {
-        logger.info("--- logging item crafting complexity");
+        logItemCraftingComplexity(snapshots.get());
 
-        List<String> processTypes = Assets.list(Prefab.class).stream()
-                .map(x -> Assets.get(x, Prefab.class).get())
-                .filter(x -> x.hasComponent(WorkstationComponent.class))
-                .flatMap(x -> x.getComponent(WorkstationComponent.class).supportedProcessTypes.keySet().stream())
-                .collect(Collectors.toList());
-
-        Multimap<ResourceUrn, List<ResourceUrn>> relatedInputs = HashMultimap.create();
-
-        for (WorkstationProcess process : workstationRegistry.getWorkstationProcesses(processTypes)) {
-            if (process instanceof DescribeProcess) {
-                DescribeProcess describeProcess = (DescribeProcess) process;
+        return "Logged as info all item crafting depth";
+    }
 
-                List<ResourceUrn> inputs = describeProcess.getInputDescriptions().stream()
-                        .map(ProcessPartDescription::getResourceUrn)
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList());
+    @Command(shortDescription = "Writes the recipes, item crafting complexity and items without an output process to a JSON Lines file")
+    public String jsExportCraftingDiagnostics() {
+        Path file = getExportFile(getConfig());
+        try {
+            return exportCraftingDiagnostics(snapshots.get(), file).toString();
+        } catch (IOException e) {
+            logger.error("Could not write the crafting diagnostics to {}", file, e);
+            return "Could not write the crafting diagnostics to " + file + ": " + e.getMessage();
+        }
+    }
 
-                for (ProcessPartDescription description : describeProcess.getOutputDescriptions()) {
-                    if (description.getResourceUrn() != null) {
-                        relatedInputs.put(description.getResourceUrn(), inputs);
-                    }
-                }
-            }
+    @Command(shortDescription = "Shows the cheapest way to craft an item, by fewest steps or fewest raw inputs")
+    public String jsHowToCraft(@CommandParam("item") String item,
+                               @CommandParam(value = "cost", required = false) String cost) {
+        CraftingPlanner.Cost planCost;
+        if (cost == null || cost.equalsIgnoreCase("steps")) {
+            planCost = CraftingPlanner.Cost.STEPS;
+        } else if (cost.equalsIgnoreCase("raw")) {
+            planCost = CraftingPlanner.Cost.RAW_INPUTS;
+        } else {
+            return "Unknown cost " + cost + ", use steps or raw";
         }
 
-        List<ResourceUrn> helpItems = Assets.list(Prefab.class).stream()
-                .filter(x -> Assets.get(x, Prefab.class).get().hasComponent(ItemHelpComponent.class))
-                .collect(Collectors.toList());
-        for (ResourceUrn helpItem : helpItems) {
-            relatedInputs.put(helpItem, Collections.EMPTY_LIST);
+        CraftingPlanner planner = snapshots.get().getCraftingPlanner();
+        List<ResourceUrn> matches = planner.find(item);
+        if (matches.isEmpty()) {
+            return "No process uses or makes " + item;
         }
+        if (matches.size() > 1) {
+            return item + " is ambiguous, it could be any of " + matches;
+        }
+        return planner.describe(matches.get(0), planCost, MAX_PLAN_LINES);
+    }
 
+    @Command(shortDescription = "Drops the cached workstation process index, e.g. after reloading assets")
+    public String jsDiagnosticsReindex() {
+        snapshots.invalidate();
 
-        Map<ResourceUrn, Integer> maxDepthMap = Maps.newHashMap();
-        Map<ResourceUrn, Integer> maxComplexityMap = Maps.newHashMap();
+        return "The workstation process index will be rebuilt on the next diagnostics run";
+    }
 
-        for (Map.Entry<ResourceUrn, List<ResourceUrn>> entry : relatedInputs.entries()) {
-            int maxDepth = 0;
-            if (maxDepthMap.containsKey(entry.getKey())) {
-                maxDepth = maxDepthMap.get(entry.getKey());
-            }
+    @Command(shortDescription = "Shows the progress of the workstation diagnostics running in the background")
+    public String jsDiagnosticsStatus() {
+        BackgroundDiagnostics diagnostics = backgroundDiagnostics;
+        if (diagnostics == null) {
+            return "Workstation diagnostics have not been started in the background";
+        }
+        return diagnostics.describe();
+    }
 
-            int maxComplexity = 0;
-            if (maxComplexityMap.containsKey(entry.getKey())) {
-                maxComplexity = maxComplexityMap.get(entry.getKey());
-            }
+    private static List<ResourceUrn> logItemsWithoutOutputProcess(CraftingSnapshot snapshot) {
+        logger.info("--- logging items without an output process");
 
-            for (ResourceUrn input : entry.getValue()) {
-                maxDepth = Math.max(maxDepth, getMaxDepth(input, relatedInputs, Lists.newArrayList()));
-                maxComplexity = Math.max(maxComplexity, getMaxComplexity(input, relatedInputs, Lists.newArrayList()));
-            }
-            maxDepthMap.put(entry.getKey(), maxDepth);
-            maxComplexityMap.put(entry.getKey(), maxComplexity);
+        List<ResourceUrn> items = snapshot.getItemsWithoutOutputProcess();
+        for (ResourceUrn item : items) {
+            logger.info("{} does not have a known output process", item);
         }
 
-        for (Map.Entry<ResourceUrn, Integer> entry : maxDepthMap.entrySet()) {
-            logger.info("{} MaxDepth={} MaxComplexity={}", entry.getKey(), entry.getValue(), maxComplexityMap.get(entry.getKey()));
+        logger.info("--- finished logging items without an output process ({} items)", items.size());
+        return items;
+    }
+
+    private static RecipeGraph logItemCraftingComplexity(CraftingSnapshot snapshot) {
+        logger.info("--- logging item crafting complexity");
+
+        RecipeGraph graph = snapshot.getRecipeGraph();
+        for (int id : graph.getCraftableIds()) {
+            logger.info("{} MaxDepth={} MaxComplexity={}", graph.getItem(id), graph.getMaxInputDepth(id), graph.getMaxInputComplexity(id));
         }
 
         logger.info("--- finished logging item crafting complexity");
+        return graph;
+    }
 
-        return "Logged as info all item crafting depth";
+    private static CraftingReportWriter.Summary exportCraftingDiagnostics(CraftingSnapshot snapshot, Path file) throws IOException {
+        CraftingReportWriter.Summary summary = CraftingReportWriter.write(snapshot, file);
+        logger.info("Wrote crafting diagnostics to {}: {}", file, summary);
+        return summary;
     }
 
-    private int getMaxDepth(ResourceUrn input, Multimap<ResourceUrn, List<ResourceUrn>> relatedInputs, List<ResourceUrn> alreadyVisited) {
-        int depth = 0;
-        if (!relatedInputs.containsKey(input) || alreadyVisited.contains(input)) {
-            return 0;
-        }
+    @Override
+    public void initialise() {
+        snapshots = new CraftingSnapshotCache(workstationRegistry, moduleManager);
+    }
 
-        alreadyVisited.add(input);
+    @Override
+    public void postBegin() {
+        // only do this in headless mode to avoid bothering too many
+        WorkstationDiagnosticsConfigComponent config = getConfig();
+        if (networkSystem.getMode().isAuthority() && !networkSystem.getMode().hasLocalClient() && config.runOnStartup) {
+            // the snapshot needs the game thread, the analysis does not
+            long start = System.nanoTime();
+            CraftingSnapshot snapshot = snapshots.get();
+            Path exportFile = config.exportOnStartup ? getExportFile(config) : null;
+            BackgroundDiagnostics diagnostics = new BackgroundDiagnostics(snapshot, System.nanoTime() - start, exportFile);
+
+            taskMaster = TaskMaster.createFIFOTaskMaster("WorkstationDiagnostics", 1);
+            backgroundDiagnostics = diagnostics;
+            if (!taskMaster.offer(diagnostics)) {
+                logger.warn("Could not queue the workstation diagnostics");
+            }
+        }
+    }
 
-        for (ResourceUrn childInput : relatedInputs.get(input).stream().flatMap(Collection::stream).collect(Collectors.toList())) {
-            depth = Math.max(depth, getMaxDepth(childInput, relatedInputs, alreadyVisited));
+    @Override
+    public void shutdown() {
+        if (taskMaster != null) {
+            taskMaster.shutdown(new ShutdownTask(), false);
+            taskMaster = null;
         }
+    }
+
+    private static WorkstationDiagnosticsConfigComponent getConfig() {
+        return Assets.getPrefab(CONFIG_PREFAB)
+                .map(prefab -> prefab.getComponent(WorkstationDiagnosticsConfigComponent.class))
+                .orElseGet(WorkstationDiagnosticsConfigComponent::new);
+    }
 
-        return 1 + depth;
+    private static Path getExportFile(WorkstationDiagnosticsConfigComponent config) {
+        return PathManager.getInstance().getHomePath().resolve(config.exportPath);
     }
 
-    private int getMaxComplexity(ResourceUrn input, Multimap<ResourceUrn, List<ResourceUrn>> relatedInputs, List<ResourceUrn> alreadyVisited) {
-        int complexity = 0;
-        if (!relatedInputs.containsKey(input) || alreadyVisited.contains(input)) {
-            return 1;
+    /**
+     * Runs both diagnostics on a snapshot, off the game thread, and keeps track of how far it got. With an export file,
+     * the results go to that file instead of one log line per item.
+     */
+    private static final class BackgroundDiagnostics implements Task {
+        private final CraftingSnapshot snapshot;
+        private final long snapshotNanos;
+        private final Path exportFile;
+
+        private volatile String phase = "queued";
+        private volatile long startedAt;
+        private volatile long orphansNanos;
+        private volatile long complexityNanos;
+        private volatile long exportNanos = -1;
+        private volatile List<ResourceUrn> itemsWithoutOutputProcess;
+        private volatile RecipeGraph recipeGraph;
+
+        BackgroundDiagnostics(CraftingSnapshot snapshot, long snapshotNanos, Path exportFile) {
+            this.snapshot = snapshot;
+            this.snapshotNanos = snapshotNanos;
+            this.exportFile = exportFile;
         }
 
-        alreadyVisited.add(input);
+        @Override
+        public String getName() {
+            return "Workstation diagnostics";
+        }
+
+        @Override
+        public void run() {
+            startedAt = System.nanoTime();
+            try {
+                // with an export file the results go there, so they are only computed here, not logged
+                phase = "finding items without an output process";
+                itemsWithoutOutputProcess = exportFile != null
+                        ? snapshot.getItemsWithoutOutputProcess()
+                        : logItemsWithoutOutputProcess(snapshot);
+                orphansNanos = System.nanoTime() - startedAt;
+
+                phase = "computing item crafting complexity";
+                long complexityStart = System.nanoTime();
+                recipeGraph = exportFile != null ? snapshot.getRecipeGraph() : logItemCraftingComplexity(snapshot);
+                complexityNanos = System.nanoTime() - complexityStart;
+
+                if (exportFile != null) {
+                    phase = "writing " + exportFile;
+                    long exportStart = System.nanoTime();
+                    exportCraftingDiagnostics(snapshot, exportFile);
+                    exportNanos = System.nanoTime() - exportStart;
+                }
 
-        for (List<ResourceUrn> childInputs : relatedInputs.get(input)) {
-            int childComplexity = 0;
-            List<ResourceUrn> childAlreadyVisited = Lists.newArrayList(alreadyVisited);
-            for (ResourceUrn childInput : childInputs) {
-                childComplexity += getMaxComplexity(childInput, relatedInputs, childAlreadyVisited);
+                phase = "finished";
+                logger.info("Workstation diagnostics finished: {}", describe());
+            } catch (IOException | RuntimeException e) {
+                phase = "failed (" + e + ")";
+                logger.error("Workstation diagnostics failed", e);
             }
-            complexity = Math.max(complexity, childComplexity);
         }
 
-        return 1 + complexity;
-    }
+        @Override
+        public boolean isTerminateSignal() {
+            return false;
+        }
 
+        String describe() {
+            StringBuilder result = new StringBuilder("Workstation diagnostics ").append(phase)
+                    .append("; snapshot ").append(millis(snapshotNanos)).append(" ms on the game thread");
+            if (itemsWithoutOutputProcess != null) {
+                result.append("; ").append(itemsWithoutOutputProcess.size()).append(" items without an output process in ")
+                        .append(millis(orphansNanos)).append(" ms");
+            }
+            if (recipeGraph != null) {
+                result.append("; complexity of ").append(recipeGraph.getCraftableIds().length).append(" items in ")
+                        .append(millis(complexityNanos)).append(" ms");
+            } else if (startedAt != 0) {
+                result.append("; running for ").append(millis(System.nanoTime() - startedAt)).append(" ms");
+            }
+            if (exportNanos >= 0) {
+                result.append("; written to ").append(exportFile).append(" in ").append(millis(exportNanos)).append(" ms");
+            }
+            return result.toString();
+        }
 
-    @Override
-    public void postBegin() {
-        // only do this in headless mode to avoid bothering too many
-        if (networkSystem.getMode().isAuthority() && !networkSystem.getMode().hasLocalClient()) {
-            logItemsWithoutOutputProcess();
-            logItemCraftingComplexity();
+        private static long millis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
         }
     }
 }
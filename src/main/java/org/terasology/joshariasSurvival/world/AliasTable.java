@@ -0,0 +1,97 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+/**
+ * Picks one of several weighted outcomes in constant time, independent of the number of outcomes (Vose's alias method).
+ * <p>
+ * Weights are chances: if they sum to less than one, the rest is the chance of {@link #NONE}. If they sum to more, they
+ * are scaled down proportionally.
+ */
+final class AliasTable {
+    static final int NONE = -1;
+
+    private final float[] probability;
+    private final int[] outcome;
+    private final int[] alias;
+
+    /**
+     * @param weights the chance of outcome {@code i} at index {@code i}
+     */
+    AliasTable(float[] weights) {
+        float sum = 0;
+        int positive = 0;
+        for (float weight : weights) {
+            if (weight > 0) {
+                sum += weight;
+                positive++;
+            }
+        }
+        float none = Math.max(0, 1 - sum);
+        int columns = positive + (none > 0 || positive == 0 ? 1 : 0);
+        float total = Math.max(sum, 1);
+
+        probability = new float[columns];
+        outcome = new int[columns];
+        alias = new int[columns];
+
+        float[] scaled = new float[columns];
+        int column = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] > 0) {
+                outcome[column] = i;
+                scaled[column] = weights[i] * columns / total;
+                column++;
+            }
+        }
+        if (column < columns) {
+            outcome[column] = NONE;
+            scaled[column] = positive == 0 ? 1 : none * columns / total;
+        }
+
+        int[] small = new int[columns];
+        int[] large = new int[columns];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < columns; i++) {
+            if (scaled[i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = outcome[more];
+            scaled[more] = scaled[more] + scaled[less] - 1;
+            if (scaled[more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // whatever is left is one up to rounding errors
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1;
+            alias[index] = outcome[index];
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1;
+            alias[index] = outcome[index];
+        }
+    }
+
+    /**
+     * @param random a uniformly distributed value in [0, 1]
+     * @return the index of the picked outcome, or {@link #NONE}
+     */
+    int sample(float random) {
+        float scaled = random * probability.length;
+        int column = Math.min((int) scaled, probability.length - 1);
+        return scaled - column < probability[column] ? outcome[column] : alias[column];
+    }
+}
@@ -0,0 +1,203 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.terasology.core.world.generator.facets.BiomeFacet;
+import org.terasology.engine.registry.In;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.WhiteNoise;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.generation.ConfigurableFacetProvider;
+import org.terasology.engine.world.generation.Facet;
+import org.terasology.engine.world.generation.FacetBorder;
+import org.terasology.engine.world.generation.FacetProviderPlugin;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Requires;
+import org.terasology.engine.world.generation.Updates;
+import org.terasology.engine.world.generation.facets.ElevationFacet;
+import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+import org.terasology.engine.world.generation.facets.SurfacesFacet;
+import org.terasology.engine.world.generator.plugin.RegisterPlugin;
+import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Range;
+
+import java.util.Arrays;
+
+/**
+ * Adds foragable food on cave floors to what {@link ForagableFoodProvider} placed on the surface, for the types that
+ * opt into cave floors with {@code onCaveFloors}.
+ * <p>
+ * Cave floors are the surfaces below the terrain elevation, so only this provider requires {@link ElevationFacet}; the
+ * surface placement works with any generator. The topmost surface of a column at or above sea level is always the
+ * surface provider's, so the two never consider the same position: a cave floor above sea level is placed on here as
+ * long as another surface of the region covers it. With no cave floor type, or both cave densities at 0, a region costs
+ * nothing here. A world generator without an elevation facet gets no cave food.
+ */
+@RegisterPlugin
+@Updates(@Facet(ForagableFoodFacet.class))
+@Requires({
+        @Facet(SeaLevelFacet.class),
+        @Facet(value = SurfacesFacet.class, border = @FacetBorder(bottom = 1)),
+        @Facet(BiomeFacet.class),
+        @Facet(ElevationFacet.class)
+})
+public class ForagableCaveFoodProvider implements ConfigurableFacetProvider, FacetProviderPlugin {
+    /**
+     * Surfaces this far below the terrain elevation are cave floors, even if no other surface of the region is above.
+     */
+    private static final int CAVE_FLOOR_MARGIN = 4;
+
+    /**
+     * Cave floors this far below sea level use the deep cave density.
+     */
+    private static final int DEEP_CAVE_DEPTH = 64;
+
+    /**
+     * At most this many cave floors per column are considered, from the top down, so cave-heavy regions cost no more
+     * than a few candidates per column.
+     */
+    private static final int MAX_CAVE_FLOORS_PER_COLUMN = 4;
+
+    /**
+     * Replaced as a whole by {@link #setSeed}, like the surface provider's.
+     */
+    private volatile Seeded seeded;
+
+    /**
+     * Read once per region, so a region is generated with a single density even if the slider moves meanwhile.
+     */
+    private volatile ForagableCaveFoodConfiguration configuration = new ForagableCaveFoodConfiguration();
+
+    /**
+     * The types of the current game, put into the context by {@code ForageIndexSystem} so that the ids match the ones
+     * it indexes by. The world preview runs without a game and leaves this null; the types are loaded from prefabs then.
+     */
+    @In
+    private ForagableFoodTypes foodTypes;
+
+    public ForagableCaveFoodProvider() {
+        this(null);
+    }
+
+    /**
+     * Uses the given types instead of the game's.
+     */
+    ForagableCaveFoodProvider(ForagableFoodTypes foodTypes) {
+        this.foodTypes = foodTypes;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        ForagableFoodTypes types = foodTypes != null ? foodTypes : ForagableFoodTypes.load();
+        // the same noise as the surface provider, so a type sits at the same spot whichever provider places it
+        seeded = new Seeded(new WhiteNoise(seed + 1), new WhiteNoise(seed), types);
+    }
+
+    @Override
+    public void process(GeneratingRegion region) {
+        Seeded current = seeded;
+        ForagableCaveFoodConfiguration settings = configuration;
+        ForagableFoodFacet facet = region.getRegionFacet(ForagableFoodFacet.class);
+        if (facet == null || !current.foodTypes.hasCaveFloorTypes()
+                || settings.caveDensity <= 0 && settings.deepCaveDensity <= 0) {
+            return;
+        }
+        ElevationFacet elevation = region.getRegionFacet(ElevationFacet.class);
+        if (elevation == null || !mayHaveCaveFloors(facet.getWorldRegion(), elevation)) {
+            return;
+        }
+
+        SurfacesFacet surface = region.getRegionFacet(SurfacesFacet.class);
+        BiomeFacet biomeFacet = region.getRegionFacet(BiomeFacet.class);
+        int seaLevel = region.getRegionFacet(SeaLevelFacet.class).getSeaLevel();
+        int deepCaveLevel = seaLevel - DEEP_CAVE_DEPTH;
+        BlockRegionc worldRegion = facet.getWorldRegion();
+        int[] column = new int[8];
+        for (int z = worldRegion.minZ(); z <= worldRegion.maxZ(); z++) {
+            for (int x = worldRegion.minX(); x <= worldRegion.maxX(); x++) {
+                int heights = 0;
+                for (int height : surface.getWorldColumn(x, z)) {
+                    if (heights == column.length) {
+                        column = Arrays.copyOf(column, heights * 2);
+                    }
+                    column[heights++] = height;
+                }
+
+                // from the top down: below the terrain, and under another surface, or the topmost surface if it is
+                // below sea level and well below the elevation
+                float terrain = elevation.getWorld(x, z);
+                int caveFloors = 0;
+                for (int i = heights - 1; i >= 0 && caveFloors < MAX_CAVE_FLOORS_PER_COLUMN; i--) {
+                    int y = column[i] + 1;
+                    if (y < worldRegion.minY() || y > worldRegion.maxY() || y >= terrain
+                            || i == heights - 1 && (y >= seaLevel || y >= terrain - CAVE_FLOOR_MARGIN)) {
+                        continue;
+                    }
+                    caveFloors++;
+                    float density = y < deepCaveLevel ? settings.deepCaveDensity : settings.caveDensity;
+                    if (Math.abs(current.densityNoise.noise(x, y, z)) < density) {
+                        AliasTable table = current.foodTypes.caveTableFor(biomeFacet.getWorld(x, z));
+                        int typeId = table.sample(Math.abs(current.typeNoise.noise(x, z)));
+                        if (typeId != AliasTable.NONE) {
+                            facet.addWorld(x, y, z, typeId);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The per-region cave check: cave floors lie below the terrain, so a region entirely above the terrain of all its
+     * columns has none and is skipped without visiting the surfaces.
+     */
+    private static boolean mayHaveCaveFloors(BlockRegionc worldRegion, ElevationFacet elevation) {
+        for (float height : elevation.getInternal()) {
+            if (worldRegion.minY() < height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String getConfigurationName() {
+        return "Foragable Cave Food";
+    }
+
+    @Override
+    public Component getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public void setConfiguration(Component configuration) {
+        this.configuration = (ForagableCaveFoodConfiguration) configuration;
+    }
+
+    private static final class Seeded {
+        private final Noise densityNoise;
+        private final Noise typeNoise;
+        private final ForagableFoodTypes foodTypes;
+
+        Seeded(Noise densityNoise, Noise typeNoise, ForagableFoodTypes foodTypes) {
+            this.densityNoise = densityNoise;
+            this.typeNoise = typeNoise;
+            this.foodTypes = foodTypes;
+        }
+    }
+
+    public static class ForagableCaveFoodConfiguration implements Component<ForagableCaveFoodConfiguration> {
+        @Range(min = 0, max = 1.0f, increment = 0.05f, precision = 2, description = "Define the amount of foragable food on cave floors")
+        public float caveDensity = 0.2f;
+
+        @Range(min = 0, max = 1.0f, increment = 0.05f, precision = 2, description = "Define the amount of foragable food on cave floors deep below sea level")
+        public float deepCaveDensity = 0.1f;
+
+        @Override
+        public void copyFrom(ForagableCaveFoodConfiguration other) {
+            this.caveDensity = other.caveDensity;
+            this.deepCaveDensity = other.deepCaveDensity;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.terasology.gestalt.entitysystem.component.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Defines a kind of foragable food placed by {@link ForagableFoodProvider}. Every prefab carrying this component becomes
+ * a {@link ForagableFoodType}.
+ */
+public class ForagableFoodDefinitionComponent implements Component<ForagableFoodDefinitionComponent> {
+    /**
+     * Block family URIs to place; one of them is picked per position.
+     */
+    public List<String> blocks = Lists.newArrayList();
+
+    /**
+     * Placed block family URIs that stay plain blocks until a player uses them, mapped to the block family they turn
+     * into then. The target family is the one carrying the block entity prefab; the placed family has none, so that
+     * untouched blocks get no entity.
+     */
+    public Map<String, String> materializedBlocks = Maps.newHashMap();
+
+    /**
+     * Chance that a surface position which passed the density filter gets this type, before the biome weight applies.
+     */
+    public float probability;
+
+    /**
+     * Weight per biome id (e.g. "CoreWorlds:Forest"), multiplied with {@link #probability}.
+     */
+    public Map<String, Float> biomeProbabilities = Maps.newHashMap();
+
+    /**
+     * Weight used for biomes missing from {@link #biomeProbabilities}.
+     */
+    public float defaultBiomeProbability;
+
+    /**
+     * Whether this type is placed on the overworld surface, above sea level.
+     */
+    public boolean onSurface = true;
+
+    /**
+     * Whether this type is placed on cave floors, which use their own density settings. Off by default, as looking for
+     * cave floors costs every region below the terrain some work.
+     */
+    public boolean onCaveFloors;
+
+    /**
+     * Shortest time in milliseconds before a foraged position grows back, or 0 if it never does.
+     */
+    public long regrowMinTime;
+
+    /**
+     * Longest time in milliseconds before a foraged position grows back.
+     */
+    public long regrowMaxTime;
+
+    @Override
+    public void copyFrom(ForagableFoodDefinitionComponent other) {
+        this.blocks = Lists.newArrayList(other.blocks);
+        this.materializedBlocks = Maps.newHashMap(other.materializedBlocks);
+        this.probability = other.probability;
+        this.biomeProbabilities = Maps.newHashMap(other.biomeProbabilities);
+        this.defaultBiomeProbability = other.defaultBiomeProbability;
+        this.onSurface = other.onSurface;
+        this.onCaveFloors = other.onCaveFloors;
+        this.regrowMinTime = other.regrowMinTime;
+        this.regrowMaxTime = other.regrowMaxTime;
+    }
+}
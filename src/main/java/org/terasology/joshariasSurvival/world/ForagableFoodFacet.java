@@ -3,16 +3,268 @@
 
 package org.terasology.joshariasSurvival.world;
 
+import org.joml.Vector3i;
+import org.joml.Vector3ic;
 import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.engine.world.generation.Border3D;
-import org.terasology.engine.world.generation.facets.base.SparseObjectFacet3D;
+import org.terasology.engine.world.generation.facets.base.BaseFacet3D;
+import org.terasology.engine.world.generation.facets.base.ObjectFacet3D;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Stores where plants can be placed
+ * Stores where plants can be placed.
+ * <p>
+ * Entries are kept in packed primitive arrays: the relative position is encoded into a single int and the type as its
+ * id within {@link ForagableFoodTypes}. Walk them with {@link #size()} and the indexed accessors, which do not allocate. The
+ * {@link ObjectFacet3D} methods are still supported over the same data; the first of them builds an open-addressing
+ * index from position to entry, so looking up or setting positions one by one stays constant time.
  */
-public class ForagableFoodFacet extends SparseObjectFacet3D<ForagableFoodType> {
+public class ForagableFoodFacet extends BaseFacet3D implements ObjectFacet3D<ForagableFoodType> {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NO_ENTRY = -1;
+
+    private final ForagableFoodTypes foodTypes;
+    private final int relMinX;
+    private final int relMinY;
+    private final int relMinZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int worldOffsetX;
+    private final int worldOffsetY;
+    private final int worldOffsetZ;
 
-    public ForagableFoodFacet(BlockRegion targetRegion, Border3D border) {
+    private int[] positions = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int size;
+    /**
+     * Entry index per hash slot, {@link #NO_ENTRY} for free slots, kept at most half full. Null until the first
+     * position lookup, and again after a removal.
+     */
+    private int[] slots;
+
+    public ForagableFoodFacet(BlockRegion targetRegion, Border3D border, ForagableFoodTypes foodTypes) {
         super(targetRegion, border);
+        this.foodTypes = foodTypes;
+
+        BlockRegionc relativeRegion = getRelativeRegion();
+        BlockRegionc worldRegion = getWorldRegion();
+        relMinX = relativeRegion.minX();
+        relMinY = relativeRegion.minY();
+        relMinZ = relativeRegion.minZ();
+        sizeX = relativeRegion.getSizeX();
+        sizeY = relativeRegion.getSizeY();
+        worldOffsetX = worldRegion.minX() - relMinX;
+        worldOffsetY = worldRegion.minY() - relMinY;
+        worldOffsetZ = worldRegion.minZ() - relMinZ;
+    }
+
+    /**
+     * @return the number of foragable spots stored in this facet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index entry index, between 0 and {@link #size()} (exclusive)
+     * @return the relative x coordinate of the entry
+     */
+    public int getRelativeX(int index) {
+        return positions[index] % sizeX + relMinX;
+    }
+
+    /**
+     * @param index entry index, between 0 and {@link #size()} (exclusive)
+     * @return the relative y coordinate of the entry
+     */
+    public int getRelativeY(int index) {
+        return (positions[index] / sizeX) % sizeY + relMinY;
+    }
+
+    /**
+     * @param index entry index, between 0 and {@link #size()} (exclusive)
+     * @return the relative z coordinate of the entry
+     */
+    public int getRelativeZ(int index) {
+        return positions[index] / sizeX / sizeY + relMinZ;
+    }
+
+    /**
+     * @param index entry index, between 0 and {@link #size()} (exclusive)
+     * @return the id of the {@link ForagableFoodType} stored at the entry
+     */
+    public int getTypeId(int index) {
+        return types[index] & 0xFF;
+    }
+
+    /**
+     * @param index entry index, between 0 and {@link #size()} (exclusive)
+     * @return the type stored at the entry
+     */
+    public ForagableFoodType getType(int index) {
+        return foodTypes.get(types[index] & 0xFF);
+    }
+
+    /**
+     * Appends an entry without checking whether the position is already occupied.
+     * Callers must visit every relative position at most once.
+     */
+    void add(int x, int y, int z, int typeId) {
+        append(pack(x, y, z), (byte) typeId);
+    }
+
+    /**
+     * World coordinate variant of {@link #add(int, int, int, int)}.
+     */
+    void addWorld(int x, int y, int z, int typeId) {
+        add(x - worldOffsetX, y - worldOffsetY, z - worldOffsetZ, typeId);
+    }
+
+    @Override
+    public ForagableFoodType get(int x, int y, int z) {
+        int index = indexOf(pack(x, y, z));
+        return index < 0 ? null : getType(index);
+    }
+
+    @Override
+    public ForagableFoodType get(Vector3ic pos) {
+        return get(pos.x(), pos.y(), pos.z());
+    }
+
+    @Override
+    public void set(int x, int y, int z, ForagableFoodType value) {
+        int packed = pack(x, y, z);
+        int index = indexOf(packed);
+        if (value == null) {
+            if (index >= 0) {
+                remove(index);
+            }
+        } else if (index >= 0) {
+            types[index] = (byte) value.getId();
+        } else {
+            append(packed, (byte) value.getId());
+        }
+    }
+
+    @Override
+    public void set(Vector3ic pos, ForagableFoodType value) {
+        set(pos.x(), pos.y(), pos.z(), value);
+    }
+
+    @Override
+    public ForagableFoodType getWorld(int x, int y, int z) {
+        return get(x - worldOffsetX, y - worldOffsetY, z - worldOffsetZ);
+    }
+
+    @Override
+    public ForagableFoodType getWorld(Vector3ic pos) {
+        return getWorld(pos.x(), pos.y(), pos.z());
+    }
+
+    @Override
+    public void setWorld(int x, int y, int z, ForagableFoodType value) {
+        set(x - worldOffsetX, y - worldOffsetY, z - worldOffsetZ, value);
+    }
+
+    @Override
+    public void setWorld(Vector3ic pos, ForagableFoodType value) {
+        setWorld(pos.x(), pos.y(), pos.z(), value);
+    }
+
+    /**
+     * Builds a map view of the entries. This allocates one key per entry; prefer the indexed accessors.
+     */
+    public Map<Vector3ic, ForagableFoodType> getRelativeEntries() {
+        Map<Vector3ic, ForagableFoodType> result = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            result.put(new Vector3i(getRelativeX(i), getRelativeY(i), getRelativeZ(i)), getType(i));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Builds a map view of the entries in world coordinates. This allocates one key per entry; prefer the indexed
+     * accessors.
+     */
+    public Map<Vector3ic, ForagableFoodType> getWorldEntries() {
+        Map<Vector3ic, ForagableFoodType> result = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            result.put(new Vector3i(getRelativeX(i) + worldOffsetX, getRelativeY(i) + worldOffsetY,
+                    getRelativeZ(i) + worldOffsetZ), getType(i));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    private int pack(int x, int y, int z) {
+        if (!getRelativeRegion().contains(x, y, z)) {
+            throw new IllegalArgumentException(String.format("Out of bounds: (%d, %d, %d) for region %s",
+                    x, y, z, getRelativeRegion().toString()));
+        }
+        return (x - relMinX) + sizeX * ((y - relMinY) + sizeY * (z - relMinZ));
+    }
+
+    private int indexOf(int packed) {
+        if (slots == null) {
+            rebuildSlots(Math.max(INITIAL_CAPACITY, positions.length) * 2);
+        }
+        int mask = slots.length - 1;
+        for (int slot = mix(packed) & mask; slots[slot] != NO_ENTRY; slot = (slot + 1) & mask) {
+            if (positions[slots[slot]] == packed) {
+                return slots[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void append(int packed, byte type) {
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, size * 2);
+            types = Arrays.copyOf(types, size * 2);
+        }
+        positions[size] = packed;
+        types[size] = type;
+        if (slots != null) {
+            if (2 * (size + 1) > slots.length) {
+                rebuildSlots(slots.length * 2);
+            }
+            insertSlot(size);
+        }
+        size++;
+    }
+
+    private void remove(int index) {
+        int tail = size - index - 1;
+        System.arraycopy(positions, index + 1, positions, index, tail);
+        System.arraycopy(types, index + 1, types, index, tail);
+        size--;
+        // the entries after the removed one moved down; reindex on the next lookup
+        slots = null;
+    }
+
+    private void rebuildSlots(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, NO_ENTRY);
+        for (int i = 0; i < size; i++) {
+            insertSlot(i);
+        }
+    }
+
+    private void insertSlot(int index) {
+        int mask = slots.length - 1;
+        int slot = mix(positions[index]) & mask;
+        while (slots[slot] != NO_ENTRY) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index;
+    }
+
+    private static int mix(int packed) {
+        int h = packed * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 }
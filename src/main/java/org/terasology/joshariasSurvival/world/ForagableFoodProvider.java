@@ -2,17 +2,15 @@
 // SPDX-License-Identifier: Apache-2.0
 package org.terasology.joshariasSurvival.world;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
-import org.joml.Vector3i;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.terasology.biomesAPI.Biome;
-import org.terasology.core.world.CoreBiome;
-import org.terasology.core.world.generator.facetProviders.PositionFilters;
-import org.terasology.core.world.generator.facetProviders.SurfaceObjectProvider;
 import org.terasology.core.world.generator.facets.BiomeFacet;
+import org.terasology.engine.registry.In;
 import org.terasology.engine.utilities.procedural.Noise;
 import org.terasology.engine.utilities.procedural.WhiteNoise;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.block.BlockRegionc;
 import org.terasology.engine.world.generation.ConfigurableFacetProvider;
 import org.terasology.engine.world.generation.Facet;
 import org.terasology.engine.world.generation.FacetBorder;
@@ -24,10 +22,12 @@ import org.terasology.engine.world.generation.facets.SeaLevelFacet;
 import org.terasology.engine.world.generation.facets.SurfacesFacet;
 import org.terasology.engine.world.generator.plugin.RegisterPlugin;
 import org.terasology.gestalt.entitysystem.component.Component;
+import org.terasology.nui.properties.Checkbox;
 import org.terasology.nui.properties.Range;
 
-import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 @RegisterPlugin
@@ -37,42 +37,70 @@ import java.util.Map;
         @Facet(value = SurfacesFacet.class, border = @FacetBorder(bottom = 1)),
         @Facet(BiomeFacet.class)
 })
-public class ForagableFoodProvider extends SurfaceObjectProvider<Biome, ForagableFoodType> implements ConfigurableFacetProvider, FacetProviderPlugin {
+public class ForagableFoodProvider implements ConfigurableFacetProvider, FacetProviderPlugin {
+    private static final int CANDIDATE_CACHE_REGIONS = 256;
 
-    private Noise densityNoiseGen;
+    /**
+     * Everything derived from the seed, replaced as a whole by {@link #setSeed} so that a region always sees one
+     * consistent seed, even while other threads are processing.
+     */
+    private volatile Seeded seeded;
 
-    private ForagableFoodDensityConfiguration configuration = new ForagableFoodDensityConfiguration();
+    /**
+     * Read once per region, so a region is generated with a single density even if the slider moves meanwhile.
+     */
+    private volatile ForagableFoodDensityConfiguration configuration = new ForagableFoodDensityConfiguration();
 
-    private Map<ForagableFoodType, Float> typeProbs = ImmutableMap.of(
-            ForagableFoodType.JOSHABERRY, 0.005f,
-            ForagableFoodType.ROCK, 0.2f);
+    /**
+     * The types of the current game, put into the context by {@code ForageIndexSystem} so that the ids match the ones
+     * it indexes by. The world preview runs without a game and leaves this null; the types are loaded from prefabs then.
+     */
+    @In
+    private ForagableFoodTypes foodTypes;
 
-    private Map<Biome, Float> biomeProbs = ImmutableMap.<Biome, Float>builder()
-            .put(CoreBiome.FOREST, 0.3f)
-            .put(CoreBiome.PLAINS, 0.2f)
-            .put(CoreBiome.MOUNTAINS, 0.2f)
-            .put(CoreBiome.SNOW, 0.001f)
-            .put(CoreBiome.BEACH, 0.001f)
-            .put(CoreBiome.OCEAN, 0f)
-            .put(CoreBiome.DESERT, 0.001f).build();
+    private final int cachedRegions;
+
+    /**
+     * Whether a region has been processed since the seed was set; a configuration change after that means the regions
+     * are processed again, as only the world preview does.
+     */
+    private volatile boolean processed;
+
+    /**
+     * Candidates and their noise per region, for the world preview which processes the same regions again on every
+     * configuration change. Null until the configuration changes after processing, so a game, which generates every
+     * region once, neither copies nor keeps candidates.
+     */
+    private volatile Cache<BlockRegion, RegionCandidates> candidateCache;
 
     public ForagableFoodProvider() {
+        this(null, CANDIDATE_CACHE_REGIONS);
+    }
 
-        for (CoreBiome biome : CoreBiome.values()) {
-            float biomeProb = biomeProbs.get(biome);
-            for (ForagableFoodType type : typeProbs.keySet()) {
-                float typeProb = typeProbs.get(type);
-                float prob = biomeProb * typeProb;
-                register(biome, type, prob);
-            }
-        }
+    /**
+     * Uses the given types instead of the game's, with the same cache as the default constructor.
+     */
+    ForagableFoodProvider(ForagableFoodTypes foodTypes) {
+        this(foodTypes, CANDIDATE_CACHE_REGIONS);
+    }
+
+    /**
+     * Uses the given types instead of the game's.
+     *
+     * @param cachedRegions how many regions to keep candidates for once the preview changes the configuration; 0
+     *                      disables the cache
+     */
+    ForagableFoodProvider(ForagableFoodTypes foodTypes, int cachedRegions) {
+        this.foodTypes = foodTypes;
+        this.cachedRegions = cachedRegions;
     }
 
     @Override
     public void setSeed(long seed) {
-        super.setSeed(seed);
-
-        densityNoiseGen = new WhiteNoise(seed + 1);
+        ForagableFoodTypes types = foodTypes != null ? foodTypes : ForagableFoodTypes.load();
+        seeded = new Seeded(seed, new WhiteNoise(seed + 1), new WhiteNoise(seed), types);
+        candidateCache = null;
+        processed = false;
     }
 
     @Override
@@ -81,16 +109,119 @@ public class ForagableFoodProvider extends SurfaceObjectProvider<Biome, Foragabl
         BiomeFacet biomeFacet = region.getRegionFacet(BiomeFacet.class);
         SeaLevelFacet seaLevel = region.getRegionFacet(SeaLevelFacet.class);
 
-        ForagableFoodFacet facet = new ForagableFoodFacet(region.getRegion(), region.getBorderForFacet(ForagableFoodFacet.class));
+        Seeded current = seeded;
+        ForagableFoodDensityConfiguration settings = configuration;
+        PoissonDiskTile spacing = settings.evenSpacing ? current.tileFor(Math.round(settings.minSpacing)) : null;
+        ForagableFoodFacet facet = new ForagableFoodFacet(region.getRegion(), region.getBorderForFacet(ForagableFoodFacet.class),
+                current.foodTypes);
 
-        List<Predicate<Vector3i>> filters = Lists.newArrayList();
+        populateFacet(current, facet, surface, biomeFacet, seaLevel.getSeaLevel(), settings.density, spacing);
 
-        filters.add(PositionFilters.minHeight(seaLevel.getSeaLevel()));
-        filters.add(PositionFilters.probability(densityNoiseGen, configuration.density));
+        region.setRegionFacet(ForagableFoodFacet.class, facet);
+        if (!processed) {
+            processed = true;
+        }
+    }
 
-        populateFacet(facet, surface, biomeFacet, filters);
+    /**
+     * Places foragable food on the topmost surface of each column of the region, if it is at or above sea level, one
+     * filter at a time over primitive candidate arrays. Every other surface is a cave floor and left to
+     * {@link ForagableCaveFoodProvider}, which takes none of these, so no position is a candidate of both.
+     * <p>
+     * The cheap sea level cut runs first over the whole region, and skips regions entirely below sea level without
+     * visiting any column. Once the world preview changed the configuration, the density noise of the remaining
+     * candidates, and the type of those that passed the density threshold before, are kept per region in
+     * {@link #candidateCache}, so moving the density slider only thresholds again instead of evaluating the noise again.
+     * <p>
+     * With even spacing, only the columns of the {@link PoissonDiskTile} points are candidates instead of every column.
+     * The density and the type probabilities thin those out further, so the spacing is a minimum.
+     *
+     * @param spacing the points to place on, or null to consider every column
+     */
+    private void populateFacet(Seeded current, ForagableFoodFacet facet, SurfacesFacet surface, BiomeFacet biomeFacet,
+                               int seaLevel, float density, PoissonDiskTile spacing) {
+        boolean metrics = ForagingMetrics.isEnabled();
+        long start = metrics ? System.nanoTime() : 0;
 
-        region.setRegionFacet(ForagableFoodFacet.class, facet);
+        BlockRegionc worldRegion = facet.getWorldRegion();
+
+        // sea level cut: collect the candidate positions above sea level, in column order
+        CandidateColumns columns = new CandidateColumns(surface, Math.max(worldRegion.minY(), seaLevel), worldRegion.maxY(),
+                spacing != null ? 64 : worldRegion.getSizeX() * worldRegion.getSizeZ());
+        // a region entirely below sea level has no candidates
+        if (worldRegion.maxY() >= seaLevel) {
+            if (spacing != null) {
+                spacing.forEachIn(worldRegion.minX(), worldRegion.minZ(), worldRegion.maxX(), worldRegion.maxZ(), columns::add);
+            } else {
+                for (int z = worldRegion.minZ(); z <= worldRegion.maxZ(); z++) {
+                    for (int x = worldRegion.minX(); x <= worldRegion.maxX(); x++) {
+                        columns.add(x, z);
+                    }
+                }
+            }
+        }
+        int[] xs = columns.xs;
+        int[] ys = columns.ys;
+        int[] zs = columns.zs;
+        int count = columns.count;
+        int surfaceCount = columns.surfaceCount;
+
+        // density threshold, then biome and type sampling for what is left
+        int survivors = 0;
+        int placed = 0;
+        Cache<BlockRegion, RegionCandidates> cache = candidateCache;
+        if (cache == null) {
+            Noise densityNoise = current.densityNoise;
+            for (int i = 0; i < count; i++) {
+                if (Math.abs(densityNoise.noise(xs[i], ys[i], zs[i])) < density) {
+                    survivors++;
+                    int typeId = current.sampleType(biomeFacet.getWorld(xs[i], zs[i]), xs[i], zs[i]);
+                    if (typeId != AliasTable.NONE) {
+                        facet.addWorld(xs[i], ys[i], zs[i], typeId);
+                        placed++;
+                    }
+                }
+            }
+        } else {
+            RegionCandidates candidates = getCandidates(cache, current, worldRegion, xs, ys, zs, count);
+            for (int i = 0; i < count; i++) {
+                if (candidates.densityNoiseValues[i] < density) {
+                    survivors++;
+                    int typeId = candidates.getType(i, biomeFacet.getWorld(xs[i], zs[i]));
+                    if (typeId != AliasTable.NONE) {
+                        facet.addWorld(xs[i], ys[i], zs[i], typeId);
+                        placed++;
+                    }
+                }
+            }
+        }
+
+        if (metrics) {
+            ForagingMetrics.recordProcess(System.nanoTime() - start, surfaceCount, count, survivors, placed);
+        }
+    }
+
+    /**
+     * @return the cached candidates of the region if they are still the given ones, otherwise new candidates with
+     * their density noise evaluated
+     */
+    private static RegionCandidates getCandidates(Cache<BlockRegion, RegionCandidates> cache, Seeded current,
+                                                  BlockRegionc worldRegion, int[] xs, int[] ys, int[] zs, int count) {
+        Noise densityNoise = current.densityNoise;
+        BlockRegion key = new BlockRegion(worldRegion);
+        RegionCandidates cached = cache.getIfPresent(key);
+        if (cached != null && cached.matches(densityNoise, xs, ys, zs, count)) {
+            return cached;
+        }
+
+        float[] noise = new float[count];
+        for (int i = 0; i < count; i++) {
+            noise[i] = Math.abs(densityNoise.noise(xs[i], ys[i], zs[i]));
+        }
+        RegionCandidates candidates = new RegionCandidates(current, Arrays.copyOf(xs, count), Arrays.copyOf(ys, count),
+                Arrays.copyOf(zs, count), noise);
+        cache.put(key, candidates);
+        return candidates;
     }
 
     @Override
@@ -106,15 +237,157 @@ public class ForagableFoodProvider extends SurfaceObjectProvider<Biome, Foragabl
     @Override
     public void setConfiguration(Component configuration) {
         this.configuration = (ForagableFoodDensityConfiguration) configuration;
+        if (processed && candidateCache == null && cachedRegions > 0) {
+            candidateCache = CacheBuilder.newBuilder().maximumSize(cachedRegions).build();
+        }
+    }
+
+    private static final class Seeded {
+        private final long seed;
+        private final Noise densityNoise;
+        private final Noise typeNoise;
+        private final ForagableFoodTypes foodTypes;
+        /**
+         * Point sets by minimum spacing, generated when first used.
+         */
+        private final Map<Integer, PoissonDiskTile> tiles = new ConcurrentHashMap<>();
+
+        Seeded(long seed, Noise densityNoise, Noise typeNoise, ForagableFoodTypes foodTypes) {
+            this.seed = seed;
+            this.densityNoise = densityNoise;
+            this.typeNoise = typeNoise;
+            this.foodTypes = foodTypes;
+        }
+
+        int sampleType(Biome biome, int x, int z) {
+            return foodTypes.tableFor(biome).sample(Math.abs(typeNoise.noise(x, z)));
+        }
+
+        PoissonDiskTile tileFor(int minSpacing) {
+            return tiles.computeIfAbsent(minSpacing, spacing -> PoissonDiskTile.generate(seed, spacing));
+        }
+    }
+
+    /**
+     * Collects the surfaces of columns that are candidates into primitive arrays.
+     */
+    private static final class CandidateColumns {
+        private final SurfacesFacet surface;
+        private final int minY;
+        private final int maxY;
+        private int[] xs;
+        private int[] ys;
+        private int[] zs;
+        private int count;
+        private int surfaceCount;
+
+        /**
+         * @param minY the lowest position kept, at least sea level
+         */
+        CandidateColumns(SurfacesFacet surface, int minY, int maxY, int capacity) {
+            this.surface = surface;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.xs = new int[capacity];
+            this.ys = new int[capacity];
+            this.zs = new int[capacity];
+        }
+
+        /**
+         * Adds the topmost surface of the column, if it is in range; the surfaces below it are cave floors.
+         */
+        void add(int x, int z) {
+            int top = Integer.MIN_VALUE;
+            for (int height : surface.getWorldColumn(x, z)) {
+                surfaceCount++;
+                top = height;
+            }
+            int y = top + 1;
+            if (top != Integer.MIN_VALUE && y >= minY && y <= maxY) {
+                append(x, y, z);
+            }
+        }
+
+        private void append(int x, int y, int z) {
+            if (count == xs.length) {
+                xs = Arrays.copyOf(xs, count * 2);
+                ys = Arrays.copyOf(ys, count * 2);
+                zs = Arrays.copyOf(zs, count * 2);
+            }
+            xs[count] = x;
+            ys[count] = y;
+            zs[count] = z;
+            count++;
+        }
+    }
+
+    /**
+     * The candidates of one region with their density noise, and their types as far as they have been sampled. Types
+     * are sampled on first use and again if the biome at the position changed.
+     */
+    private static final class RegionCandidates {
+        private final Seeded seeded;
+        private final int[] xs;
+        private final int[] ys;
+        private final int[] zs;
+        private final float[] densityNoiseValues;
+        private final Sampled[] sampled;
+
+        RegionCandidates(Seeded seeded, int[] xs, int[] ys, int[] zs, float[] densityNoiseValues) {
+            this.seeded = seeded;
+            this.xs = xs;
+            this.ys = ys;
+            this.zs = zs;
+            this.densityNoiseValues = densityNoiseValues;
+            this.sampled = new Sampled[xs.length];
+        }
+
+        boolean matches(Noise noise, int[] otherXs, int[] otherYs, int[] otherZs, int count) {
+            return seeded.densityNoise == noise && xs.length == count
+                    && Arrays.equals(xs, 0, count, otherXs, 0, count)
+                    && Arrays.equals(ys, 0, count, otherYs, 0, count)
+                    && Arrays.equals(zs, 0, count, otherZs, 0, count);
+        }
+
+        /**
+         * Racing threads may both sample the same candidate; they compute the same type, and the sample is published
+         * as one immutable object.
+         */
+        int getType(int index, Biome biome) {
+            Sampled current = sampled[index];
+            if (current == null || current.biome != biome) {
+                current = new Sampled(biome, seeded.sampleType(biome, xs[index], zs[index]));
+                sampled[index] = current;
+            }
+            return current.typeId;
+        }
+    }
+
+    private static final class Sampled {
+        private final Biome biome;
+        private final int typeId;
+
+        Sampled(Biome biome, int typeId) {
+            this.biome = biome;
+            this.typeId = typeId;
+        }
     }
 
     public static class ForagableFoodDensityConfiguration implements Component<ForagableFoodDensityConfiguration> {
         @Range(min = 0, max = 1.0f, increment = 0.05f, precision = 2, description = "Define the overall amount of foragable food")
         public float density = 0.4f;
 
+        @Checkbox(description = "Space foragable food evenly instead of at random")
+        public boolean evenSpacing;
+
+        @Range(min = 2, max = 32, increment = 1, precision = 0, description = "Define the least distance between evenly spaced foragable food")
+        public float minSpacing = 6;
+
         @Override
         public void copyFrom(ForagableFoodDensityConfiguration other) {
             this.density = other.density;
+            this.evenSpacing = other.evenSpacing;
+            this.minSpacing = other.minSpacing;
         }
     }
 
@@ -3,56 +3,195 @@
 
 package org.terasology.joshariasSurvival.world;
 
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
-import org.joml.Vector3ic;
-import org.terasology.engine.registry.CoreRegistry;
-import org.terasology.engine.utilities.procedural.WhiteNoise;
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terasology.engine.registry.In;
 import org.terasology.engine.world.block.Block;
 import org.terasology.engine.world.block.BlockManager;
+import org.terasology.engine.world.block.BlockRegionc;
+import org.terasology.engine.world.block.family.BlockFamily;
 import org.terasology.engine.world.chunks.Chunk;
+import org.terasology.engine.world.chunks.Chunks;
 import org.terasology.engine.world.generation.Region;
 import org.terasology.engine.world.generation.WorldRasterizerPlugin;
 import org.terasology.engine.world.generator.plugin.RegisterPlugin;
 
 import java.util.List;
-import java.util.Map;
 
 @RegisterPlugin
 public class ForagableFoodRasterizer implements WorldRasterizerPlugin {
-    private final Map<ForagableFoodType, List<Block>> foragableFood = Maps.newEnumMap(ForagableFoodType.class);
+    private static final Logger logger = LoggerFactory.getLogger(ForagableFoodRasterizer.class);
+    private static final Block[] NO_VARIANTS = new Block[0];
 
+    @In
     private BlockManager blockManager;
+    /**
+     * The types of the current game, put into the context by {@code ForageIndexSystem} so that the ids match the ones
+     * it indexes by.
+     */
+    @In
+    private ForagableFoodTypes foodTypes;
+    /**
+     * The index of the current game, put into the context by its system; without one, placements are not recorded.
+     */
+    @In
+    private ForageIndex forageIndex;
+    /**
+     * Holds the pregenerated placements, put into the context by {@code ForagePregenerationSystem}; without one, every
+     * chunk runs the provider.
+     */
+    @In
+    private ForagePregenCacheHolder pregenCache;
+
+    /**
+     * Everything {@link #generateChunk} needs, set once by {@link #initialize} and never changed, so any number of
+     * generator threads can share it.
+     */
+    private volatile Setup setup;
 
     @Override
     public void initialize() {
-        blockManager = CoreRegistry.get(BlockManager.class);
+        if (blockManager == null || foodTypes == null) {
+            logger.error("The foraging rasterizer was not given its block manager and types, no foragable food is placed");
+            initialize(BlockManager.AIR_ID, new Block[0][], null, null);
+            return;
+        }
+
+        Block[][] variantsByType = new Block[foodTypes.size()][];
+        for (ForagableFoodType type : foodTypes.getTypes()) {
+            List<Block> variants = Lists.newArrayList();
+            for (String uri : type.getBlocks()) {
+                BlockFamily family = blockManager.getBlockFamily(uri);
+                if (family != null) {
+                    variants.add(family.getArchetypeBlock());
+                } else {
+                    logger.warn("Foragable food type {} refers to unknown block {}", type, uri);
+                }
+            }
+            variantsByType[type.getId()] = variants.toArray(new Block[0]);
+        }
 
-        foragableFood.put(ForagableFoodType.JOSHABERRY, ImmutableList.<Block>of(
-                blockManager.getBlock("JoshariasSurvival:JoshaberryBushFull")));
-        foragableFood.put(ForagableFoodType.ROCK, ImmutableList.<Block>of(
-                blockManager.getBlockFamily("JoshariasSurvival:Rock").getArchetypeBlock()));
+        initialize(blockManager.getBlock(BlockManager.AIR_ID).getId(), variantsByType, forageIndex, pregenCache);
+    }
+
+    /**
+     * Sets up the rasterizer from already resolved blocks, bypassing the block manager.
+     *
+     * @param air the id of the air block
+     * @param blocks block variants per {@link ForagableFoodType}, indexed by type id
+     * @param forageIndex where to record placements, or null
+     * @param pregenCache holds the pregenerated placements to use, or null
+     */
+    void initialize(short air, Block[][] blocks, ForageIndex forageIndex, ForagePregenCacheHolder pregenCache) {
+        this.setup = new Setup(air, blocks, forageIndex, pregenCache);
     }
 
     @Override
     public void generateChunk(Chunk chunk, Region chunkRegion) {
-        ForagableFoodFacet facet = chunkRegion.getFacet(ForagableFoodFacet.class);
-        Block air = blockManager.getBlock(BlockManager.AIR_ID);
+        Setup current = setup;
+        Block[][] foragableFood = current.foragableFood;
+        short airId = current.airId;
+        ForageIndex index = current.index;
+        ForagePregenCacheHolder pregenCache = current.pregenCache;
 
-        WhiteNoise noise = new WhiteNoise(chunk.getPosition().hashCode());
+        boolean metrics = ForagingMetrics.isEnabled();
+        long start = metrics ? System.nanoTime() : 0;
+        int occupied = 0;
+        int missingBlock = 0;
+        int placed = 0;
+        char[] placedIndices = null;
+        byte[] placedTypes = null;
 
-        Map<Vector3ic, ForagableFoodType> entries = facet.getRelativeEntries();
-        for (Vector3ic pos : entries.keySet()) {
+        BlockRegionc worldRegion = chunkRegion.getRegion();
+        int offsetX = worldRegion.minX();
+        int offsetY = worldRegion.minY();
+        int offsetZ = worldRegion.minZ();
 
-            // check if some other rasterizer has already placed something here
-            if (chunk.getBlock(pos).equals(air)) {
+        // pregenerated placements spare running the provider (and whatever it requires) for this chunk
+        ForagePregenCache cache = pregenCache != null ? pregenCache.get() : null;
+        ForagePregenCache.Placements cached = cache != null
+                ? cache.get(offsetX >> Chunks.POWER_X, offsetY >> Chunks.POWER_Y, offsetZ >> Chunks.POWER_Z)
+                : null;
+        ForagableFoodFacet facet = cached == null ? chunkRegion.getFacet(ForagableFoodFacet.class) : null;
+
+        for (int i = 0, size = cached != null ? cached.size() : facet.size(); i < size; i++) {
+            int x = cached != null ? cached.getX(i) : facet.getRelativeX(i);
+            int y = cached != null ? cached.getY(i) : facet.getRelativeY(i);
+            int z = cached != null ? cached.getZ(i) : facet.getRelativeZ(i);
+
+            int typeId = cached != null ? cached.getTypeId(i) : facet.getTypeId(i);
+            Block[] variants = typeId < foragableFood.length ? foragableFood[typeId] : NO_VARIANTS;
+            if (variants.length == 0) {
+                missingBlock++;
+                continue;
+            }
 
-                ForagableFoodType type = entries.get(pos);
-                List<Block> list = foragableFood.get(type);
-                int blockIdx = Math.abs(noise.intNoise(pos.x(), pos.y(), pos.z())) % list.size();
-                Block block = list.get(blockIdx);
-                chunk.setBlock(pos, block);
+            // check if some other rasterizer has already placed something here
+            if (chunk.getBlock(x, y, z).getId() == airId) {
+                Block block = variants.length == 1
+                        ? variants[0]
+                        : variants[variantIndex(offsetX + x, offsetY + y, offsetZ + z, variants.length)];
+                chunk.setBlock(x, y, z, block);
+                if (index != null) {
+                    if (placedIndices == null) {
+                        placedIndices = new char[size - i];
+                        placedTypes = new byte[size - i];
+                    }
+                    placedIndices[placed] = (char) ForageIndex.localIndex(x, y, z);
+                    placedTypes[placed] = (byte) typeId;
+                }
+                placed++;
+                if (metrics) {
+                    ForagingMetrics.recordPlacement(typeId);
+                }
+            } else {
+                occupied++;
             }
         }
+
+        if (index != null) {
+            index.recordChunk(offsetX >> Chunks.POWER_X, offsetY >> Chunks.POWER_Y, offsetZ >> Chunks.POWER_Z,
+                    placedIndices, placedTypes, placed);
+        }
+
+        if (metrics) {
+            ForagingMetrics.recordRasterize(System.nanoTime() - start, occupied, missingBlock);
+        }
+    }
+
+    private static final class Setup {
+        /**
+         * Block variants per {@link ForagableFoodType}, indexed by type id.
+         */
+        private final Block[][] foragableFood;
+        private final short airId;
+        /**
+         * Where placements are recorded, or null to not record them.
+         */
+        private final ForageIndex index;
+        /**
+         * Holds the pregenerated placements, or null to always run the provider.
+         */
+        private final ForagePregenCacheHolder pregenCache;
+
+        Setup(short airId, Block[][] foragableFood, ForageIndex index, ForagePregenCacheHolder pregenCache) {
+            this.airId = airId;
+            this.foragableFood = foragableFood;
+            this.index = index;
+            this.pregenCache = pregenCache;
+        }
+    }
+
+    /**
+     * Picks a block variant from the world position alone, so the result does not depend on the order in which
+     * chunks are generated.
+     */
+    private static int variantIndex(int x, int y, int z, int count) {
+        int hash = x * 0x27d4eb2d ^ y * 0x165667b1 ^ z * 0x9e3779b9;
+        hash ^= hash >>> 15;
+        hash *= 0x2c1b3c6d;
+        hash ^= hash >>> 12;
+        return (hash >>> 1) % count;
     }
 }
@@ -3,7 +3,154 @@
 
 package org.terasology.joshariasSurvival.world;
 
-public enum ForagableFoodType {
-    JOSHABERRY,
-    ROCK
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.terasology.biomesAPI.Biome;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A kind of foragable food, loaded from a prefab with a {@link ForagableFoodDefinitionComponent}.
+ * <p>
+ * Types are numbered densely by {@link ForagableFoodTypes}; the id is what {@link ForagableFoodFacet} stores.
+ */
+public final class ForagableFoodType {
+    private final int id;
+    private final String name;
+    private final List<String> blocks;
+    private final Map<String, String> materializedBlocks;
+    private final float probability;
+    private final Map<String, Float> biomeProbabilities;
+    /**
+     * {@link #biomeProbabilities} by lower case key, split by whether the key names the module.
+     */
+    private final Map<String, Float> qualifiedBiomeProbabilities;
+    private final Map<String, Float> unqualifiedBiomeProbabilities;
+    private final float defaultBiomeProbability;
+    private final boolean onSurface;
+    private final boolean onCaveFloors;
+    private final long regrowMinTime;
+    private final long regrowMaxTime;
+
+    public ForagableFoodType(int id, String name, ForagableFoodDefinitionComponent definition) {
+        this.id = id;
+        this.name = name;
+        this.blocks = ImmutableList.copyOf(definition.blocks);
+        this.materializedBlocks = ImmutableMap.copyOf(definition.materializedBlocks);
+        this.probability = definition.probability;
+        this.biomeProbabilities = ImmutableMap.copyOf(definition.biomeProbabilities);
+        Map<String, Float> qualified = Maps.newHashMap();
+        Map<String, Float> unqualified = Maps.newHashMap();
+        for (Map.Entry<String, Float> entry : biomeProbabilities.entrySet()) {
+            String key = entry.getKey().toLowerCase(Locale.ROOT);
+            (key.indexOf(':') >= 0 ? qualified : unqualified).putIfAbsent(key, entry.getValue());
+        }
+        this.qualifiedBiomeProbabilities = ImmutableMap.copyOf(qualified);
+        this.unqualifiedBiomeProbabilities = ImmutableMap.copyOf(unqualified);
+        this.defaultBiomeProbability = definition.defaultBiomeProbability;
+        this.onSurface = definition.onSurface;
+        this.onCaveFloors = definition.onCaveFloors;
+        this.regrowMinTime = definition.regrowMinTime;
+        this.regrowMaxTime = Math.max(definition.regrowMinTime, definition.regrowMaxTime);
+    }
+
+    /**
+     * @return the index of this type within its {@link ForagableFoodTypes}
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the URN of the defining prefab
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the block family URIs this type places
+     */
+    public List<String> getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * @return the block family URIs that are promoted to another family on first use, mapped to that family
+     */
+    public Map<String, String> getMaterializedBlocks() {
+        return materializedBlocks;
+    }
+
+    /**
+     * @return whether this type is placed on the overworld surface
+     */
+    public boolean isOnSurface() {
+        return onSurface;
+    }
+
+    /**
+     * @return whether this type is placed on cave floors
+     */
+    public boolean isOnCaveFloors() {
+        return onCaveFloors;
+    }
+
+    /**
+     * @return whether foraged positions of this type grow back
+     */
+    public boolean isRegrowing() {
+        return regrowMinTime > 0;
+    }
+
+    /**
+     * @return the shortest time in milliseconds before a foraged position grows back
+     */
+    public long getRegrowMinTime() {
+        return regrowMinTime;
+    }
+
+    /**
+     * @return the longest time in milliseconds before a foraged position grows back
+     */
+    public long getRegrowMaxTime() {
+        return regrowMaxTime;
+    }
+
+    /**
+     * Biome keys may be given either fully qualified or without the module name; a fully qualified key wins over one
+     * without the module name.
+     *
+     * @return the chance of this type at a position in the given biome
+     */
+    public float getProbability(Biome biome) {
+        String biomeId = biome.getId().toString().toLowerCase(Locale.ROOT);
+        Float biomeProbability = qualifiedBiomeProbabilities.get(biomeId);
+        if (biomeProbability == null) {
+            biomeProbability = unqualifiedBiomeProbabilities.get(biomeId.substring(biomeId.indexOf(':') + 1));
+        }
+        return probability * (biomeProbability != null ? biomeProbability : defaultBiomeProbability);
+    }
+
+    /**
+     * @return a hash of everything that decides where this type is placed, but not of what happens once it is foraged
+     */
+    long fingerprint() {
+        long hash = name.hashCode();
+        hash = 31 * hash + blocks.hashCode();
+        hash = 31 * hash + Float.floatToIntBits(probability);
+        hash = 31 * hash + biomeProbabilities.hashCode();
+        hash = 31 * hash + Float.floatToIntBits(defaultBiomeProbability);
+        hash = 31 * hash + (onSurface ? 1 : 0);
+        hash = 31 * hash + (onCaveFloors ? 1 : 0);
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
@@ -0,0 +1,146 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.ImmutableList;
+import org.terasology.biomesAPI.Biome;
+import org.terasology.core.world.CoreBiome;
+import org.terasology.engine.entitySystem.prefab.Prefab;
+import org.terasology.engine.utilities.Assets;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All foragable food types, numbered densely, with their per-biome sampling tables.
+ * <p>
+ * Every biome gets an {@link AliasTable} over the types, so picking a type costs the same no matter how many types
+ * there are. Core biomes are looked up by ordinal; other biomes (e.g. added through BiomesAPI) get their table built
+ * on first use from the types' default biome weights. Cave floors have tables of their own, over the types placed there.
+ */
+public final class ForagableFoodTypes {
+    /**
+     * Type ids are stored as a byte in {@link ForagableFoodFacet}.
+     */
+    public static final int MAX_TYPES = 256;
+
+    private static final AliasTable NOTHING = new AliasTable(new float[0]);
+
+    private final List<ForagableFoodType> types;
+    private final AliasTable[] coreBiomeTables;
+    private final AliasTable[] coreCaveTables;
+    private final Map<Biome, AliasTable> otherBiomeTables = new ConcurrentHashMap<>();
+    private final Map<Biome, AliasTable> otherCaveTables = new ConcurrentHashMap<>();
+    private final boolean onCaveFloors;
+
+    /**
+     * @param types the types, where the type at index {@code i} has id {@code i}
+     */
+    public ForagableFoodTypes(List<ForagableFoodType> types) {
+        if (types.size() > MAX_TYPES) {
+            throw new IllegalArgumentException("At most " + MAX_TYPES + " foragable food types are supported, got " + types.size());
+        }
+        for (int i = 0; i < types.size(); i++) {
+            if (types.get(i).getId() != i) {
+                throw new IllegalArgumentException("Type " + types.get(i) + " does not have id " + i);
+            }
+        }
+        this.types = ImmutableList.copyOf(types);
+
+        CoreBiome[] coreBiomes = CoreBiome.values();
+        coreBiomeTables = new AliasTable[coreBiomes.length];
+        coreCaveTables = new AliasTable[coreBiomes.length];
+        for (CoreBiome biome : coreBiomes) {
+            coreBiomeTables[biome.ordinal()] = buildTable(biome, false);
+            coreCaveTables[biome.ordinal()] = buildTable(biome, true);
+        }
+        onCaveFloors = this.types.stream().anyMatch(ForagableFoodType::isOnCaveFloors);
+    }
+
+    /**
+     * Loads every prefab with a {@link ForagableFoodDefinitionComponent}, numbered in URN order so that every caller
+     * assigns the same ids.
+     */
+    public static ForagableFoodTypes load() {
+        ImmutableList.Builder<ForagableFoodType> types = ImmutableList.builder();
+        int id = 0;
+        List<ResourceUrn> urns = ImmutableList.sortedCopyOf(Comparator.comparing(ResourceUrn::toString), Assets.list(Prefab.class));
+        for (ResourceUrn urn : urns) {
+            Optional<Prefab> prefab = Assets.get(urn, Prefab.class);
+            if (prefab.isPresent() && prefab.get().hasComponent(ForagableFoodDefinitionComponent.class)) {
+                types.add(new ForagableFoodType(id++, urn.toString(), prefab.get().getComponent(ForagableFoodDefinitionComponent.class)));
+            }
+        }
+        return new ForagableFoodTypes(types.build());
+    }
+
+    public int size() {
+        return types.size();
+    }
+
+    public ForagableFoodType get(int id) {
+        return types.get(id);
+    }
+
+    public List<ForagableFoodType> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return a hash of the types and their probabilities, to tell whether placements were made with the same types
+     */
+    public long fingerprint() {
+        long hash = types.size();
+        for (ForagableFoodType type : types) {
+            hash = 31 * hash + type.fingerprint();
+        }
+        return hash;
+    }
+
+    /**
+     * @return whether any type is placed on cave floors, so that looking for them is worth it
+     */
+    public boolean hasCaveFloorTypes() {
+        return onCaveFloors;
+    }
+
+    /**
+     * @return the table to sample type ids from in the given biome; {@link AliasTable#NONE} means nothing is placed
+     */
+    AliasTable tableFor(Biome biome) {
+        if (biome == null) {
+            return NOTHING;
+        }
+        if (biome instanceof CoreBiome) {
+            return coreBiomeTables[((CoreBiome) biome).ordinal()];
+        }
+        return otherBiomeTables.computeIfAbsent(biome, key -> buildTable(key, false));
+    }
+
+    /**
+     * @return the table to sample type ids from on cave floors below the given biome
+     */
+    AliasTable caveTableFor(Biome biome) {
+        if (biome == null) {
+            return NOTHING;
+        }
+        if (biome instanceof CoreBiome) {
+            return coreCaveTables[((CoreBiome) biome).ordinal()];
+        }
+        return otherCaveTables.computeIfAbsent(biome, key -> buildTable(key, true));
+    }
+
+    private AliasTable buildTable(Biome biome, boolean caveFloor) {
+        float[] weights = new float[types.size()];
+        for (ForagableFoodType type : types) {
+            if (caveFloor ? type.isOnCaveFloors() : type.isOnSurface()) {
+                weights[type.getId()] = type.getProbability(biome);
+            }
+        }
+        return new AliasTable(weights);
+    }
+}
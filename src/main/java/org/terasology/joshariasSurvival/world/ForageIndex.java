@@ -0,0 +1,592 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.Lists;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Where the foraging generator placed what, for nearest-resource queries that do not touch block data.
+ * <p>
+ * Every chunk with placements has an immutable entry: the sorted chunk-local indices of its placements in a
+ * {@code char[]} and their type ids in a {@code byte[]}. Chunks are grouped into regions of {@link #REGION_CHUNKS}
+ * by {@link #REGION_CHUNKS} columns, each with a bitmask of the types it contains. Regions are looked up by their
+ * position, so queries visit the regions around the query point ring by ring and stop once no closer placement can
+ * exist, skipping regions without the wanted types.
+ * <p>
+ * The index only holds the chunks it is told about: a game keeps one per world, saves and loads the entries of each
+ * chunk when the chunk is saved and loaded (see {@link #save} and {@link #load}), and forgets them when it unloads.
+ * <p>
+ * The rasterizer records chunks from the generator threads while queries run on the game thread; entries are replaced,
+ * never changed, so both sides only need the concurrent maps.
+ */
+public final class ForageIndex {
+    static final int REGION_CHUNKS = 16;
+    private static final int REGION_SIZE = REGION_CHUNKS * Math.min(Chunks.SIZE_X, Chunks.SIZE_Z);
+    private static final int PLACEMENT_BYTES = 3;
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final Map<Long, ChunkEntry> chunks = new ConcurrentHashMap<>();
+    private final Map<Long, Region> regions = new ConcurrentHashMap<>();
+    /**
+     * Region coordinates every region has been within so far, bounding the rings a query has to visit.
+     */
+    private int minRegionX = Integer.MAX_VALUE;
+    private int maxRegionX = Integer.MIN_VALUE;
+    private int minRegionZ = Integer.MAX_VALUE;
+    private int maxRegionZ = Integer.MIN_VALUE;
+
+    /**
+     * @return the chunk-local index of a position, as passed to {@link #recordChunk}
+     */
+    public static int localIndex(int x, int y, int z) {
+        return x | z << Chunks.POWER_X | y << (Chunks.POWER_X + Chunks.POWER_Z);
+    }
+
+    /**
+     * Replaces the placements of a chunk.
+     *
+     * @param localIndices chunk-local indices, see {@link #localIndex}; may be longer than {@code count}
+     * @param typeIds type ids, in the same order
+     */
+    public void recordChunk(int chunkX, int chunkY, int chunkZ, char[] localIndices, byte[] typeIds, int count) {
+        long chunkKey = pack(chunkX, chunkY, chunkZ);
+        if (count == 0) {
+            removeChunk(chunkKey);
+            return;
+        }
+        ChunkEntry entry = ChunkEntry.sorted(chunkKey, localIndices, typeIds, count);
+        includeRegion(chunkX, chunkZ);
+        chunks.put(chunkKey, entry);
+        regions.compute(regionKey(chunkX, chunkZ), (key, region) -> (region == null ? Region.EMPTY : region).with(chunkKey, entry));
+    }
+
+    /**
+     * Adds or replaces a single placement, e.g. one that grew back.
+     */
+    public void add(int x, int y, int z, int typeId) {
+        int chunkX = x >> Chunks.POWER_X;
+        int chunkY = y >> Chunks.POWER_Y;
+        int chunkZ = z >> Chunks.POWER_Z;
+        char local = (char) localIndex(x & (Chunks.SIZE_X - 1), y & (Chunks.SIZE_Y - 1), z & (Chunks.SIZE_Z - 1));
+        long chunkKey = pack(chunkX, chunkY, chunkZ);
+        includeRegion(chunkX, chunkZ);
+        ChunkEntry entry = chunks.compute(chunkKey, (key, existing) -> existing == null
+                ? ChunkEntry.sorted(key, new char[]{local}, new byte[]{(byte) typeId}, 1)
+                : existing.with(local, typeId));
+        regions.compute(regionKey(chunkX, chunkZ), (key, region) -> (region == null ? Region.EMPTY : region).with(chunkKey, entry));
+    }
+
+    /**
+     * Forgets a single placement, e.g. one that was foraged.
+     *
+     * @return whether there was a placement at the position
+     */
+    public boolean remove(int x, int y, int z) {
+        long chunkKey = pack(x >> Chunks.POWER_X, y >> Chunks.POWER_Y, z >> Chunks.POWER_Z);
+        char local = (char) localIndex(x & (Chunks.SIZE_X - 1), y & (Chunks.SIZE_Y - 1), z & (Chunks.SIZE_Z - 1));
+        ChunkEntry entry = chunks.get(chunkKey);
+        if (entry == null || Arrays.binarySearch(entry.localIndices, local) < 0) {
+            return false;
+        }
+        ChunkEntry updated = chunks.computeIfPresent(chunkKey, (key, existing) -> existing.without(local));
+        if (updated == null) {
+            removeChunk(chunkKey);
+        }
+        return true;
+    }
+
+    /**
+     * Forgets every placement of a chunk, e.g. when it unloads.
+     */
+    public void forgetChunk(int chunkX, int chunkY, int chunkZ) {
+        removeChunk(pack(chunkX, chunkY, chunkZ));
+    }
+
+    /**
+     * @return the type id of the placement at the position, or -1 if none is recorded there
+     */
+    public int typeIdAt(int x, int y, int z) {
+        ChunkEntry entry = chunks.get(pack(x >> Chunks.POWER_X, y >> Chunks.POWER_Y, z >> Chunks.POWER_Z));
+        if (entry == null) {
+            return -1;
+        }
+        char local = (char) localIndex(x & (Chunks.SIZE_X - 1), y & (Chunks.SIZE_Y - 1), z & (Chunks.SIZE_Z - 1));
+        int index = Arrays.binarySearch(entry.localIndices, local);
+        return index < 0 ? -1 : entry.typeIds[index] & 0xFF;
+    }
+
+    public synchronized void clear() {
+        chunks.clear();
+        regions.clear();
+        minRegionX = Integer.MAX_VALUE;
+        maxRegionX = Integer.MIN_VALUE;
+        minRegionZ = Integer.MAX_VALUE;
+        maxRegionZ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return the number of indexed placements
+     */
+    public int size() {
+        int size = 0;
+        for (ChunkEntry entry : chunks.values()) {
+            size += entry.typeIds.length;
+        }
+        return size;
+    }
+
+    /**
+     * @param typeFilter which type ids to consider
+     * @return up to {@code k} placements closest to the position, closest first
+     */
+    public List<Hit> findNearest(int x, int y, int z, int k, IntPredicate typeFilter) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        long[] typeMask = mask(typeFilter);
+        int centerX = Math.floorDiv(x >> Chunks.POWER_X, REGION_CHUNKS);
+        int centerZ = Math.floorDiv(z >> Chunks.POWER_Z, REGION_CHUNKS);
+
+        PriorityQueue<Hit> best = new PriorityQueue<>(Comparator.comparingLong(Hit::getDistanceSquared).reversed());
+        int remaining = regions.size();
+        int lastRing = lastRing(centerX, centerZ);
+        for (int ring = 0; ring <= lastRing && remaining > 0; ring++) {
+            // every region of this ring and beyond is at least this far in x or z
+            long ringDistance = ring == 0 ? 0 : (long) (ring - 1) * REGION_SIZE;
+            if (best.size() == k && ringDistance * ringDistance > best.peek().getDistanceSquared()) {
+                break;
+            }
+            for (int dz = -ring; dz <= ring; dz++) {
+                int step = Math.abs(dz) == ring ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring; dx += step) {
+                    Region region = regions.get(pack(centerX + dx, 0, centerZ + dz));
+                    if (region == null) {
+                        continue;
+                    }
+                    remaining--;
+                    if (region.intersects(typeMask)) {
+                        collectNearest(region, x, y, z, k, typeFilter, best);
+                    }
+                }
+            }
+        }
+
+        Hit[] result = best.toArray(new Hit[0]);
+        Arrays.sort(result, Comparator.comparingLong(Hit::getDistanceSquared));
+        return Arrays.asList(result);
+    }
+
+    /**
+     * @param typeFilter which type ids to consider
+     * @return every placement within the radius of the position, closest first
+     */
+    public List<Hit> findWithin(int x, int y, int z, int radius, IntPredicate typeFilter) {
+        long radiusSquared = (long) radius * radius;
+        long[] typeMask = mask(typeFilter);
+        List<Hit> result = Lists.newArrayList();
+        int minRegionX = Math.floorDiv((x - radius) >> Chunks.POWER_X, REGION_CHUNKS);
+        int maxRegionX = Math.floorDiv((x + radius) >> Chunks.POWER_X, REGION_CHUNKS);
+        int minRegionZ = Math.floorDiv((z - radius) >> Chunks.POWER_Z, REGION_CHUNKS);
+        int maxRegionZ = Math.floorDiv((z + radius) >> Chunks.POWER_Z, REGION_CHUNKS);
+        for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++) {
+            for (int regionX = minRegionX; regionX <= maxRegionX; regionX++) {
+                Region region = regions.get(pack(regionX, 0, regionZ));
+                if (region == null || !region.intersects(typeMask) || region.distanceSquared(x, z) > radiusSquared) {
+                    continue;
+                }
+                for (long chunkKey : region.chunkKeys) {
+                    ChunkEntry entry = chunks.get(chunkKey);
+                    if (entry != null && entry.distanceSquared(x, y, z) <= radiusSquared) {
+                        entry.collect(x, y, z, typeFilter, radiusSquared, result::add);
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingLong(Hit::getDistanceSquared));
+        return result;
+    }
+
+    /**
+     * Encodes the placements of a chunk, with the names of their types so they survive a change of ids: the number of
+     * names and the names, then per placement its chunk-local index and the position of its type among the names.
+     *
+     * @return the encoded placements, or null if the chunk has none
+     */
+    public byte[] save(int chunkX, int chunkY, int chunkZ, ForagableFoodTypes types) {
+        ChunkEntry entry = chunks.get(pack(chunkX, chunkY, chunkZ));
+        if (entry == null) {
+            return null;
+        }
+        List<String> names = Lists.newArrayList();
+        int[] nameIndex = new int[ForagableFoodTypes.MAX_TYPES];
+        Arrays.fill(nameIndex, -1);
+        byte[] placements = new byte[entry.localIndices.length * PLACEMENT_BYTES];
+        for (int i = 0; i < entry.localIndices.length; i++) {
+            int typeId = entry.typeIds[i] & 0xFF;
+            if (nameIndex[typeId] < 0) {
+                nameIndex[typeId] = names.size();
+                names.add(typeId < types.size() ? types.get(typeId).getName() : "");
+            }
+            placements[PLACEMENT_BYTES * i] = (byte) (entry.localIndices[i] >> 8);
+            placements[PLACEMENT_BYTES * i + 1] = (byte) entry.localIndices[i];
+            placements[PLACEMENT_BYTES * i + 2] = (byte) nameIndex[typeId];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(placements.length + 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(names.size() - 1);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.write(placements);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Replaces the placements of a chunk with those encoded by {@link #save}.
+     *
+     * @param typeIdOf maps a type name to its current id, or to a negative number to drop its placements
+     * @throws IOException if the data is not in the format {@link #save} writes
+     */
+    public void load(int chunkX, int chunkY, int chunkZ, byte[] data, ToIntFunction<String> typeIdOf) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        int[] typeIds = new int[in.readUnsignedByte() + 1];
+        for (int i = 0; i < typeIds.length; i++) {
+            typeIds[i] = typeIdOf.applyAsInt(in.readUTF());
+        }
+        byte[] placements = new byte[in.available()];
+        in.readFully(placements);
+        if (placements.length % PLACEMENT_BYTES != 0) {
+            throw new IOException("Truncated forage placements of chunk (" + chunkX + ", " + chunkY + ", " + chunkZ + ")");
+        }
+        int count = placements.length / PLACEMENT_BYTES;
+        char[] locals = new char[count];
+        byte[] types = new byte[count];
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int stored = placements[PLACEMENT_BYTES * i + 2] & 0xFF;
+            int typeId = stored < typeIds.length ? typeIds[stored] : -1;
+            if (typeId >= 0) {
+                locals[kept] = (char) ((placements[PLACEMENT_BYTES * i] & 0xFF) << 8 | placements[PLACEMENT_BYTES * i + 1] & 0xFF);
+                types[kept] = (byte) typeId;
+                kept++;
+            }
+        }
+        recordChunk(chunkX, chunkY, chunkZ, locals, types, kept);
+    }
+
+    private synchronized int lastRing(int regionX, int regionZ) {
+        if (minRegionX > maxRegionX) {
+            return -1;
+        }
+        return Math.max(Math.max(regionX - minRegionX, maxRegionX - regionX),
+                Math.max(regionZ - minRegionZ, maxRegionZ - regionZ));
+    }
+
+    private synchronized void includeRegion(int chunkX, int chunkZ) {
+        int regionX = Math.floorDiv(chunkX, REGION_CHUNKS);
+        int regionZ = Math.floorDiv(chunkZ, REGION_CHUNKS);
+        minRegionX = Math.min(minRegionX, regionX);
+        maxRegionX = Math.max(maxRegionX, regionX);
+        minRegionZ = Math.min(minRegionZ, regionZ);
+        maxRegionZ = Math.max(maxRegionZ, regionZ);
+    }
+
+    private void collectNearest(Region region, int x, int y, int z, int k, IntPredicate typeFilter, PriorityQueue<Hit> best) {
+        if (best.size() == k && region.distanceSquared(x, z) > best.peek().getDistanceSquared()) {
+            return;
+        }
+        for (long chunkKey : region.chunkKeys) {
+            ChunkEntry entry = chunks.get(chunkKey);
+            if (entry == null || best.size() == k && entry.distanceSquared(x, y, z) > best.peek().getDistanceSquared()) {
+                continue;
+            }
+            entry.collect(x, y, z, typeFilter, Long.MAX_VALUE, hit -> {
+                if (best.size() < k) {
+                    best.add(hit);
+                } else if (hit.getDistanceSquared() < best.peek().getDistanceSquared()) {
+                    best.poll();
+                    best.add(hit);
+                }
+            });
+        }
+    }
+
+    private void removeChunk(long chunkKey) {
+        chunks.remove(chunkKey);
+        int chunkX = unpack(chunkKey >>> (2 * COORDINATE_BITS));
+        int chunkZ = unpack(chunkKey);
+        regions.computeIfPresent(regionKey(chunkX, chunkZ), (key, region) -> region.without(chunkKey));
+    }
+
+    private static long[] mask(IntPredicate typeFilter) {
+        long[] mask = new long[ForagableFoodTypes.MAX_TYPES / 64];
+        for (int id = 0; id < ForagableFoodTypes.MAX_TYPES; id++) {
+            if (typeFilter.test(id)) {
+                mask[id >> 6] |= 1L << id;
+            }
+        }
+        return mask;
+    }
+
+    private static long regionKey(int chunkX, int chunkZ) {
+        return pack(Math.floorDiv(chunkX, REGION_CHUNKS), 0, Math.floorDiv(chunkZ, REGION_CHUNKS));
+    }
+
+    private static long pack(int x, int y, int z) {
+        return (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    private static int unpack(long bits) {
+        return (int) ((bits & COORDINATE_MASK) << (64 - COORDINATE_BITS) >> (64 - COORDINATE_BITS));
+    }
+
+    /**
+     * Squared distance from a value to the closest point of the range {@code [min, max]}.
+     */
+    private static long axisDistanceSquared(int value, int min, int max) {
+        long distance = value < min ? min - value : value > max ? value - max : 0;
+        return distance * distance;
+    }
+
+    /**
+     * A placement found by a query.
+     */
+    public static final class Hit {
+        private final int x;
+        private final int y;
+        private final int z;
+        private final int typeId;
+        private final long distanceSquared;
+
+        Hit(int x, int y, int z, int typeId, long distanceSquared) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.typeId = typeId;
+            this.distanceSquared = distanceSquared;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getZ() {
+            return z;
+        }
+
+        public int getTypeId() {
+            return typeId;
+        }
+
+        public long getDistanceSquared() {
+            return distanceSquared;
+        }
+    }
+
+    /**
+     * The placements of one chunk, sorted by local index.
+     */
+    private static final class ChunkEntry {
+        private final long chunkKey;
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final char[] localIndices;
+        private final byte[] typeIds;
+        private final long[] typeMask;
+
+        private ChunkEntry(long chunkKey, char[] localIndices, byte[] typeIds) {
+            this.chunkKey = chunkKey;
+            this.minX = unpack(chunkKey >>> (2 * COORDINATE_BITS)) << Chunks.POWER_X;
+            this.minY = unpack(chunkKey >>> COORDINATE_BITS) << Chunks.POWER_Y;
+            this.minZ = unpack(chunkKey) << Chunks.POWER_Z;
+            this.localIndices = localIndices;
+            this.typeIds = typeIds;
+            this.typeMask = new long[ForagableFoodTypes.MAX_TYPES / 64];
+            for (byte typeId : typeIds) {
+                typeMask[(typeId & 0xFF) >> 6] |= 1L << (typeId & 0xFF);
+            }
+        }
+
+        static ChunkEntry sorted(long chunkKey, char[] localIndices, byte[] typeIds, int count) {
+            // pack index and type into one int so a single primitive sort orders both
+            int[] packed = new int[count];
+            for (int i = 0; i < count; i++) {
+                packed[i] = localIndices[i] << 8 | typeIds[i] & 0xFF;
+            }
+            Arrays.sort(packed);
+            char[] locals = new char[count];
+            byte[] types = new byte[count];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                char local = (char) (packed[i] >>> 8);
+                if (size > 0 && locals[size - 1] == local) {
+                    types[size - 1] = (byte) packed[i];
+                } else {
+                    locals[size] = local;
+                    types[size] = (byte) packed[i];
+                    size++;
+                }
+            }
+            return new ChunkEntry(chunkKey, Arrays.copyOf(locals, size), Arrays.copyOf(types, size));
+        }
+
+        ChunkEntry with(char local, int typeId) {
+            char[] locals = Arrays.copyOf(localIndices, localIndices.length + 1);
+            byte[] types = Arrays.copyOf(typeIds, typeIds.length + 1);
+            locals[localIndices.length] = local;
+            types[typeIds.length] = (byte) typeId;
+            return sorted(chunkKey, locals, types, locals.length);
+        }
+
+        /**
+         * @return the entry without the placement, or null if nothing would be left
+         */
+        ChunkEntry without(char local) {
+            int index = Arrays.binarySearch(localIndices, local);
+            if (index < 0) {
+                return this;
+            }
+            if (localIndices.length == 1) {
+                return null;
+            }
+            char[] locals = new char[localIndices.length - 1];
+            byte[] types = new byte[typeIds.length - 1];
+            System.arraycopy(localIndices, 0, locals, 0, index);
+            System.arraycopy(localIndices, index + 1, locals, index, locals.length - index);
+            System.arraycopy(typeIds, 0, types, 0, index);
+            System.arraycopy(typeIds, index + 1, types, index, types.length - index);
+            return new ChunkEntry(chunkKey, locals, types);
+        }
+
+        long distanceSquared(int x, int y, int z) {
+            return axisDistanceSquared(x, minX, minX + Chunks.SIZE_X - 1)
+                    + axisDistanceSquared(y, minY, minY + Chunks.SIZE_Y - 1)
+                    + axisDistanceSquared(z, minZ, minZ + Chunks.SIZE_Z - 1);
+        }
+
+        void collect(int x, int y, int z, IntPredicate typeFilter, long maxDistanceSquared, Consumer<Hit> sink) {
+            for (int i = 0; i < localIndices.length; i++) {
+                int typeId = typeIds[i] & 0xFF;
+                if (!typeFilter.test(typeId)) {
+                    continue;
+                }
+                int local = localIndices[i];
+                int hitX = minX + (local & (Chunks.SIZE_X - 1));
+                int hitZ = minZ + (local >> Chunks.POWER_X & (Chunks.SIZE_Z - 1));
+                int hitY = minY + (local >> (Chunks.POWER_X + Chunks.POWER_Z));
+                long dx = hitX - x;
+                long dy = hitY - y;
+                long dz = hitZ - z;
+                long distanceSquared = dx * dx + dy * dy + dz * dz;
+                if (distanceSquared <= maxDistanceSquared) {
+                    sink.accept(new Hit(hitX, hitY, hitZ, typeId, distanceSquared));
+                }
+            }
+        }
+    }
+
+    /**
+     * The chunks of a region column and the union of their types. The mask may keep types whose last placement was
+     * removed; it is only used to skip regions.
+     */
+    private static final class Region {
+        static final Region EMPTY = new Region(0, 0, new long[0], new long[ForagableFoodTypes.MAX_TYPES / 64]);
+
+        private final int minX;
+        private final int minZ;
+        private final long[] chunkKeys;
+        private final long[] typeMask;
+
+        private Region(int minX, int minZ, long[] chunkKeys, long[] typeMask) {
+            this.minX = minX;
+            this.minZ = minZ;
+            this.chunkKeys = chunkKeys;
+            this.typeMask = typeMask;
+        }
+
+        Region with(long chunkKey, ChunkEntry entry) {
+            long[] mask = typeMask.clone();
+            for (int i = 0; i < mask.length; i++) {
+                mask[i] |= entry.typeMask[i];
+            }
+            long[] keys = chunkKeys;
+            if (!contains(chunkKey)) {
+                keys = Arrays.copyOf(chunkKeys, chunkKeys.length + 1);
+                keys[chunkKeys.length] = chunkKey;
+            }
+            int regionMinX = Math.floorDiv(entry.minX >> Chunks.POWER_X, REGION_CHUNKS) * REGION_CHUNKS << Chunks.POWER_X;
+            int regionMinZ = Math.floorDiv(entry.minZ >> Chunks.POWER_Z, REGION_CHUNKS) * REGION_CHUNKS << Chunks.POWER_Z;
+            return new Region(regionMinX, regionMinZ, keys, mask);
+        }
+
+        /**
+         * @return the region without the chunk, or null if no chunk would be left
+         */
+        Region without(long chunkKey) {
+            if (!contains(chunkKey)) {
+                return this;
+            }
+            if (chunkKeys.length == 1) {
+                return null;
+            }
+            long[] keys = new long[chunkKeys.length - 1];
+            int next = 0;
+            for (long key : chunkKeys) {
+                if (key != chunkKey) {
+                    keys[next++] = key;
+                }
+            }
+            return new Region(minX, minZ, keys, typeMask);
+        }
+
+        boolean intersects(long[] mask) {
+            for (int i = 0; i < mask.length; i++) {
+                if ((typeMask[i] & mask[i]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long distanceSquared(int x, int z) {
+            return axisDistanceSquared(x, minX, minX + (REGION_CHUNKS << Chunks.POWER_X) - 1)
+                    + axisDistanceSquared(z, minZ, minZ + (REGION_CHUNKS << Chunks.POWER_Z) - 1);
+        }
+
+        private boolean contains(long chunkKey) {
+            for (long key : chunkKeys) {
+                if (key == chunkKey) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
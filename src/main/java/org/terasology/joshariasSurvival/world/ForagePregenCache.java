@@ -0,0 +1,239 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pregenerated foraging placements per chunk, in a memory-mapped file, for {@link ForagableFoodRasterizer} to use
+ * instead of running the provider.
+ * <p>
+ * The file starts with a header holding the key of the world the placements were generated for, computed by the caller
+ * from everything that decides them; a file with a different key is emptied when opened, so a changed generator,
+ * configuration or set of types never reads stale placements. The file is locked while open, so two games never map
+ * and append to the same one. After the header come records, appended one per chunk: the chunk position, the number
+ * of placements, then per placement its chunk-local index (see {@link ForageIndex#localIndex}) and type id. A chunk
+ * written twice is read from its last record.
+ * <p>
+ * Records are appended under a lock from any thread and read without one: a record is complete before its offset is
+ * published, and the mapping is only ever replaced by a larger one of the same file.
+ */
+public final class ForagePregenCache implements Closeable {
+    private static final int MAGIC = 0x4a534643;
+    private static final int FORMAT_VERSION = 1;
+    private static final int END_POSITION = 16;
+    private static final int HEADER_BYTES = 24;
+    private static final int RECORD_HEADER_BYTES = 16;
+    private static final int PLACEMENT_BYTES = 3;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+    private final long key;
+    private final Map<Long, Integer> offsets = new ConcurrentHashMap<>();
+    private volatile MappedByteBuffer buffer;
+    private int end;
+    private boolean closed;
+
+    private ForagePregenCache(FileChannel channel, FileLock lock, long key) {
+        this.channel = channel;
+        this.lock = lock;
+        this.key = key;
+    }
+
+    /**
+     * Opens and locks the cache file, creating it if needed, and indexes the chunks it holds.
+     *
+     * @param key identifies the current world and its configuration; a file written with another key is emptied
+     * @throws IOException also if another game has the file open
+     */
+    public static ForagePregenCache open(Path file, long key) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Another game is using the foraging cache " + file);
+            }
+            ForagePregenCache cache = new ForagePregenCache(channel, lock, key);
+            cache.load();
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return the number of chunks held
+     */
+    public int size() {
+        return offsets.size();
+    }
+
+    public boolean contains(int chunkX, int chunkY, int chunkZ) {
+        return offsets.containsKey(pack(chunkX, chunkY, chunkZ));
+    }
+
+    /**
+     * @return the placements of the chunk, or null if it is not held
+     */
+    Placements get(int chunkX, int chunkY, int chunkZ) {
+        Integer offset = offsets.get(pack(chunkX, chunkY, chunkZ));
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer view = buffer.duplicate();
+        int count = view.getInt(offset + 12);
+        view.position(offset + RECORD_HEADER_BYTES);
+        view.limit(offset + RECORD_HEADER_BYTES + count * PLACEMENT_BYTES);
+        return new Placements(view.slice(), count);
+    }
+
+    /**
+     * Appends the placements of a facet covering exactly the given chunk.
+     */
+    public synchronized void put(int chunkX, int chunkY, int chunkZ, ForagableFoodFacet facet) throws IOException {
+        if (closed) {
+            throw new IOException("The foraging cache is closed");
+        }
+        int count = facet.size();
+        int offset = end;
+        ensureCapacity((long) offset + RECORD_HEADER_BYTES + (long) count * PLACEMENT_BYTES);
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.putInt(chunkX).putInt(chunkY).putInt(chunkZ).putInt(count);
+        for (int i = 0; i < count; i++) {
+            view.putChar((char) ForageIndex.localIndex(facet.getRelativeX(i), facet.getRelativeY(i), facet.getRelativeZ(i)));
+            view.put((byte) facet.getTypeId(i));
+        }
+        end = view.position();
+        buffer.putInt(END_POSITION, end);
+        offsets.put(pack(chunkX, chunkY, chunkZ), offset);
+    }
+
+    /**
+     * Writes the mapped pages back to the file.
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        lock.release();
+        channel.close();
+    }
+
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, Math.min(fileSize, Integer.MAX_VALUE)));
+        if (fileSize < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                || buffer.getLong(8) != key) {
+            reset();
+            return;
+        }
+
+        int storedEnd = Math.min(buffer.getInt(END_POSITION), buffer.capacity());
+        int offset = HEADER_BYTES;
+        while (offset + RECORD_HEADER_BYTES <= storedEnd) {
+            int count = buffer.getInt(offset + 12);
+            if (count < 0 || count > (storedEnd - offset - RECORD_HEADER_BYTES) / PLACEMENT_BYTES) {
+                break;
+            }
+            offsets.put(pack(buffer.getInt(offset), buffer.getInt(offset + 4), buffer.getInt(offset + 8)), offset);
+            offset += RECORD_HEADER_BYTES + count * PLACEMENT_BYTES;
+        }
+        // anything after the last complete record is dropped and overwritten
+        end = offset;
+        buffer.putInt(END_POSITION, end);
+    }
+
+    private void reset() {
+        offsets.clear();
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, FORMAT_VERSION);
+        buffer.putLong(8, key);
+        end = HEADER_BYTES;
+        buffer.putInt(END_POSITION, end);
+    }
+
+    private void ensureCapacity(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IOException("The foraging cache is full");
+        }
+        long capacity = Math.min(Integer.MAX_VALUE, Math.max(required, 2L * buffer.capacity()));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    /**
+     * The placements of one chunk, read straight from the mapped file.
+     */
+    static final class Placements {
+        private final ByteBuffer data;
+        private final int size;
+
+        private Placements(ByteBuffer data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int getX(int index) {
+            return data.getChar(index * PLACEMENT_BYTES) & (Chunks.SIZE_X - 1);
+        }
+
+        int getY(int index) {
+            return data.getChar(index * PLACEMENT_BYTES) >> (Chunks.POWER_X + Chunks.POWER_Z);
+        }
+
+        int getZ(int index) {
+            return data.getChar(index * PLACEMENT_BYTES) >> Chunks.POWER_X & (Chunks.SIZE_Z - 1);
+        }
+
+        int getTypeId(int index) {
+            return data.get(index * PLACEMENT_BYTES + 2) & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+/**
+ * The {@link ForagePregenCache} of the current game, if any, shared through the context between the system that opens
+ * it and {@link ForagableFoodRasterizer}. The cache can be opened after the world generator is set up, so the
+ * rasterizer is given this holder rather than the cache itself.
+ */
+public final class ForagePregenCacheHolder {
+    private volatile ForagePregenCache cache;
+
+    /**
+     * @return the cache the rasterizer reads from, or null
+     */
+    public ForagePregenCache get() {
+        return cache;
+    }
+
+    /**
+     * @param cache the cache for the rasterizer to read from, or null to generate everything
+     */
+    public void set(ForagePregenCache cache) {
+        this.cache = cache;
+    }
+}
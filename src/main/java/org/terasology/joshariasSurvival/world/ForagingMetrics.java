@@ -0,0 +1,192 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and timings of foraging world generation, shared by all generator threads.
+ * <p>
+ * Disabled by default. While disabled, the provider and rasterizer only read {@link #isEnabled()} once per region or
+ * chunk and record nothing. While enabled, they add their per-region totals to striped counters, so generator threads
+ * do not contend on a single cache line.
+ */
+public final class ForagingMetrics {
+    private static volatile boolean enabled;
+
+    private static final LongAdder regions = new LongAdder();
+    private static final LongAdder surfaces = new LongAdder();
+    private static final LongAdder seaLevelRejects = new LongAdder();
+    private static final LongAdder densityRejects = new LongAdder();
+    private static final LongAdder biomeRejects = new LongAdder();
+    private static final LongAdder candidates = new LongAdder();
+
+    private static final LongAdder chunks = new LongAdder();
+    private static final LongAdder occupiedSkips = new LongAdder();
+    private static final LongAdder missingBlockSkips = new LongAdder();
+    private static final LongAdder[] placements = adders(ForagableFoodTypes.MAX_TYPES);
+
+    private static final LatencyHistogram processTimes = new LatencyHistogram();
+    private static final LatencyHistogram rasterizeTimes = new LatencyHistogram();
+
+    private ForagingMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ForagingMetrics.enabled = enabled;
+    }
+
+    /**
+     * Records one run of the provider.
+     *
+     * @param surfaceCount every surface of the region
+     * @param aboveSeaLevel the surfaces that passed the sea level cut
+     * @param aboveDensity the surfaces that also passed the density threshold
+     * @param placed the positions that got a type
+     */
+    static void recordProcess(long nanos, int surfaceCount, int aboveSeaLevel, int aboveDensity, int placed) {
+        regions.increment();
+        surfaces.add(surfaceCount);
+        seaLevelRejects.add(surfaceCount - aboveSeaLevel);
+        densityRejects.add(aboveSeaLevel - aboveDensity);
+        biomeRejects.add(aboveDensity - placed);
+        candidates.add(placed);
+        processTimes.record(nanos);
+    }
+
+    /**
+     * Records one run of the rasterizer. Placements are recorded separately through {@link #recordPlacement(int)}.
+     */
+    static void recordRasterize(long nanos, int occupied, int missingBlock) {
+        chunks.increment();
+        occupiedSkips.add(occupied);
+        missingBlockSkips.add(missingBlock);
+        rasterizeTimes.record(nanos);
+    }
+
+    static void recordPlacement(int typeId) {
+        placements[typeId].increment();
+    }
+
+    public static void reset() {
+        for (LongAdder adder : new LongAdder[]{regions, surfaces, seaLevelRejects, densityRejects, biomeRejects, candidates,
+                chunks, occupiedSkips, missingBlockSkips}) {
+            adder.reset();
+        }
+        for (LongAdder adder : placements) {
+            adder.reset();
+        }
+        processTimes.reset();
+        rasterizeTimes.reset();
+    }
+
+    /**
+     * @param foodTypes used to name the placements per type, may be null to report them by id
+     * @return a multi-line report of everything recorded since the last reset
+     */
+    public static String report(ForagableFoodTypes foodTypes) {
+        StringBuilder result = new StringBuilder("Foraging metrics (").append(enabled ? "enabled" : "disabled").append(")\n");
+        result.append("provider: ").append(regions.sum()).append(" regions, ").append(processTimes).append('\n');
+        result.append("  ").append(surfaces.sum()).append(" surfaces, rejected ")
+                .append(seaLevelRejects.sum()).append(" below sea level, ")
+                .append(densityRejects.sum()).append(" by density, ")
+                .append(biomeRejects.sum()).append(" by biome; ")
+                .append(candidates.sum()).append(" candidates\n");
+        result.append("rasterizer: ").append(chunks.sum()).append(" chunks, ").append(rasterizeTimes).append('\n');
+        result.append("  skipped ").append(occupiedSkips.sum()).append(" occupied, ")
+                .append(missingBlockSkips.sum()).append(" without blocks\n");
+        result.append("placements:");
+        boolean any = false;
+        for (int id = 0; id < placements.length; id++) {
+            long count = placements[id].sum();
+            if (count > 0) {
+                String name = foodTypes != null && id < foodTypes.size() ? foodTypes.get(id).getName() : "#" + id;
+                result.append(' ').append(name).append('=').append(count);
+                any = true;
+            }
+        }
+        if (!any) {
+            result.append(" none");
+        }
+        return result.toString();
+    }
+
+    private static LongAdder[] adders(int count) {
+        LongAdder[] result = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new LongAdder();
+        }
+        return result;
+    }
+
+    /**
+     * A histogram of durations with one bucket per power of two nanoseconds. Percentiles are reported as the upper
+     * bound of their bucket, i.e. at most twice the real value.
+     */
+    static final class LatencyHistogram {
+        private static final int BUCKETS = 40;
+
+        private final LongAdder[] buckets = adders(BUCKETS);
+        private final LongAdder total = new LongAdder();
+
+        void record(long nanos) {
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(nanos, 1) - 1));
+            buckets[bucket].increment();
+            total.add(nanos);
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            total.reset();
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return the upper bound in nanoseconds of the bucket holding the given quantile
+         */
+        long quantile(double quantile) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    return 1L << i;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            long count = count();
+            if (count == 0) {
+                return "no timings";
+            }
+            return String.format("total %d ms, mean %d us, p50 <= %d us, p99 <= %d us",
+                    TimeUnit.NANOSECONDS.toMillis(total.sum()),
+                    TimeUnit.NANOSECONDS.toMicros(total.sum() / count),
+                    TimeUnit.NANOSECONDS.toMicros(quantile(0.5)),
+                    TimeUnit.NANOSECONDS.toMicros(quantile(0.99)));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A square of columns no two of which are closer than a minimum spacing, repeated over the whole world.
+ * <p>
+ * The points are generated once per seed and spacing with Bridson's algorithm on integer positions, measuring distances
+ * around the edges of the tile as if it were a torus, so the spacing also holds between neighbouring copies and the
+ * pattern has no seams. Points are sorted into buckets of {@link #BUCKET_SIZE} columns, so finding those inside a
+ * region only looks at the buckets it overlaps.
+ */
+final class PoissonDiskTile {
+    static final int SIZE = 256;
+    static final int MAX_SPACING = SIZE / 4;
+
+    private static final int BUCKET_POWER = 4;
+    private static final int BUCKET_SIZE = 1 << BUCKET_POWER;
+    private static final int BUCKETS = SIZE / BUCKET_SIZE;
+    private static final int ATTEMPTS = 30;
+    private static final long SALT = 0x9e3779b97f4a7c15L;
+
+    private final int minSpacing;
+    /**
+     * The points of bucket {@code b} are at {@code bucketStart[b]} up to {@code bucketStart[b + 1]}.
+     */
+    private final int[] bucketStart;
+    private final short[] xs;
+    private final short[] zs;
+
+    private PoissonDiskTile(int minSpacing, int[] bucketStart, short[] xs, short[] zs) {
+        this.minSpacing = minSpacing;
+        this.bucketStart = bucketStart;
+        this.xs = xs;
+        this.zs = zs;
+    }
+
+    interface Visitor {
+        void visit(int x, int z);
+    }
+
+    int getMinSpacing() {
+        return minSpacing;
+    }
+
+    int size() {
+        return xs.length;
+    }
+
+    /**
+     * Visits the world columns of all points inside the given bounds, bucket by bucket.
+     */
+    void forEachIn(int minX, int minZ, int maxX, int maxZ, Visitor visitor) {
+        for (int bucketZ = minZ >> BUCKET_POWER; bucketZ <= maxZ >> BUCKET_POWER; bucketZ++) {
+            for (int bucketX = minX >> BUCKET_POWER; bucketX <= maxX >> BUCKET_POWER; bucketX++) {
+                int bucket = (bucketZ & (BUCKETS - 1)) * BUCKETS + (bucketX & (BUCKETS - 1));
+                for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+                    int x = (bucketX << BUCKET_POWER) + (xs[i] & (BUCKET_SIZE - 1));
+                    int z = (bucketZ << BUCKET_POWER) + (zs[i] & (BUCKET_SIZE - 1));
+                    if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+                        visitor.visit(x, z);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates the points for the given seed and spacing; the same arguments always give the same points.
+     *
+     * @param minSpacing the smallest distance between two points, clamped to 1 up to {@link #MAX_SPACING}
+     */
+    static PoissonDiskTile generate(long seed, int minSpacing) {
+        int spacing = Math.max(1, Math.min(MAX_SPACING, minSpacing));
+        SplittableRandom random = new SplittableRandom(seed ^ SALT * spacing);
+
+        // an acceleration grid whose cells are small enough to hold at most one point
+        int cellSize = Math.max(1, (int) (spacing / Math.sqrt(2)));
+        int cells = (SIZE + cellSize - 1) / cellSize;
+        int reach = (spacing + cellSize - 1) / cellSize + 1;
+        int[] grid = new int[cells * cells];
+        Arrays.fill(grid, -1);
+
+        int[] pointXs = new int[64];
+        int[] pointZs = new int[64];
+        int[] active = new int[64];
+        int count = 0;
+        int activeCount = 0;
+
+        pointXs[0] = random.nextInt(SIZE);
+        pointZs[0] = random.nextInt(SIZE);
+        grid[pointZs[0] / cellSize * cells + pointXs[0] / cellSize] = 0;
+        active[activeCount++] = count++;
+
+        while (activeCount > 0) {
+            int slot = random.nextInt(activeCount);
+            int from = active[slot];
+            boolean found = false;
+            for (int attempt = 0; attempt < ATTEMPTS && !found; attempt++) {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = spacing * (1 + random.nextDouble());
+                int x = Math.floorMod(pointXs[from] + (int) Math.round(Math.cos(angle) * distance), SIZE);
+                int z = Math.floorMod(pointZs[from] + (int) Math.round(Math.sin(angle) * distance), SIZE);
+                if (!isFree(x, z, spacing, grid, cells, cellSize, reach, pointXs, pointZs)) {
+                    continue;
+                }
+                if (count == pointXs.length) {
+                    pointXs = Arrays.copyOf(pointXs, count * 2);
+                    pointZs = Arrays.copyOf(pointZs, count * 2);
+                    active = Arrays.copyOf(active, count * 2);
+                }
+                pointXs[count] = x;
+                pointZs[count] = z;
+                grid[z / cellSize * cells + x / cellSize] = count;
+                active[activeCount++] = count++;
+                found = true;
+            }
+            if (!found) {
+                active[slot] = active[--activeCount];
+            }
+        }
+
+        // counting sort into buckets
+        int[] bucketStart = new int[BUCKETS * BUCKETS + 1];
+        for (int i = 0; i < count; i++) {
+            bucketStart[bucketOf(pointXs[i], pointZs[i]) + 1]++;
+        }
+        for (int bucket = 0; bucket < BUCKETS * BUCKETS; bucket++) {
+            bucketStart[bucket + 1] += bucketStart[bucket];
+        }
+        int[] next = Arrays.copyOf(bucketStart, BUCKETS * BUCKETS);
+        short[] xs = new short[count];
+        short[] zs = new short[count];
+        for (int i = 0; i < count; i++) {
+            int target = next[bucketOf(pointXs[i], pointZs[i])]++;
+            xs[target] = (short) pointXs[i];
+            zs[target] = (short) pointZs[i];
+        }
+        return new PoissonDiskTile(spacing, bucketStart, xs, zs);
+    }
+
+    private static boolean isFree(int x, int z, int spacing, int[] grid, int cells, int cellSize, int reach,
+                                  int[] pointXs, int[] pointZs) {
+        int cellX = x / cellSize;
+        int cellZ = z / cellSize;
+        for (int dz = -reach; dz <= reach; dz++) {
+            for (int dx = -reach; dx <= reach; dx++) {
+                int other = grid[Math.floorMod(cellZ + dz, cells) * cells + Math.floorMod(cellX + dx, cells)];
+                if (other >= 0 && wrappedDistanceSquared(x, z, pointXs[other], pointZs[other]) < spacing * spacing) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int wrappedDistanceSquared(int x1, int z1, int x2, int z2) {
+        int dx = Math.abs(x1 - x2);
+        int dz = Math.abs(z1 - z2);
+        dx = Math.min(dx, SIZE - dx);
+        dz = Math.min(dz, SIZE - dz);
+        return dx * dx + dz * dz;
+    }
+
+    private static int bucketOf(int x, int z) {
+        return (z >> BUCKET_POWER) * BUCKETS + (x >> BUCKET_POWER);
+    }
+}
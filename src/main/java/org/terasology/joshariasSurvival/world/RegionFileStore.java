@@ -0,0 +1,203 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-chunk data saved in files of {@link #REGION_CHUNKS} by {@link #REGION_CHUNKS} chunk columns, so that a save
+ * writes only the regions that changed and loading a chunk reads only its own region.
+ * <p>
+ * A region is read when the first of its chunks is loaded or written, and dropped from memory once none of its chunks
+ * is loaded and its changes are saved. Each file holds a format header, then per chunk its position, the length of its
+ * data and the data itself; files are replaced as a whole through a temporary file, so a crash mid-save leaves the
+ * previous version. Not thread safe; used from the game thread.
+ */
+public final class RegionFileStore {
+    static final int REGION_CHUNKS = 16;
+    private static final int MAGIC = 0x4a535246;
+    private static final int FORMAT_VERSION = 1;
+    private static final int COORDINATE_BITS = 21;
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private final Path directory;
+    private final Map<Long, RegionFile> regions = Maps.newHashMap();
+
+    /**
+     * @param directory where the region files are kept, created on the first save
+     */
+    public RegionFileStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Marks the chunk as loaded, reading its region if needed.
+     *
+     * @return the data last written for the chunk, or null if there is none
+     */
+    public byte[] load(int chunkX, int chunkY, int chunkZ) throws IOException {
+        RegionFile region = region(chunkX, chunkZ);
+        long chunkKey = pack(chunkX, chunkY, chunkZ);
+        region.loaded.add(chunkKey);
+        return region.chunks.get(chunkKey);
+    }
+
+    /**
+     * @return whether the chunk was loaded or written since it last unloaded
+     */
+    public boolean isLoaded(int chunkX, int chunkY, int chunkZ) {
+        RegionFile region = regions.get(regionKey(chunkX, chunkZ));
+        return region != null && region.loaded.contains(pack(chunkX, chunkY, chunkZ));
+    }
+
+    /**
+     * Replaces the data of the chunk and marks it as loaded; it is written on the next {@link #save}.
+     *
+     * @param data the new data, or null to remove the chunk's data
+     */
+    public void put(int chunkX, int chunkY, int chunkZ, byte[] data) throws IOException {
+        RegionFile region = region(chunkX, chunkZ);
+        long chunkKey = pack(chunkX, chunkY, chunkZ);
+        region.loaded.add(chunkKey);
+        byte[] previous = data != null ? region.chunks.put(chunkKey, data) : region.chunks.remove(chunkKey);
+        region.dirty |= data != null || previous != null;
+    }
+
+    /**
+     * Marks the chunk as unloaded, dropping its region from memory if nothing else needs it. Unsaved data stays until
+     * the next {@link #save}.
+     */
+    public void unload(int chunkX, int chunkY, int chunkZ) {
+        long regionKey = regionKey(chunkX, chunkZ);
+        RegionFile region = regions.get(regionKey);
+        if (region != null) {
+            region.loaded.remove(pack(chunkX, chunkY, chunkZ));
+            if (region.loaded.isEmpty() && !region.dirty) {
+                regions.remove(regionKey);
+            }
+        }
+    }
+
+    /**
+     * Writes every region changed since the last save, and drops those without loaded chunks from memory.
+     *
+     * @return the number of region files written
+     */
+    public int save() throws IOException {
+        int written = 0;
+        Iterator<Map.Entry<Long, RegionFile>> iterator = regions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, RegionFile> entry = iterator.next();
+            RegionFile region = entry.getValue();
+            if (region.dirty) {
+                write(regionFile(entry.getKey()), region);
+                region.dirty = false;
+                written++;
+            }
+            if (region.loaded.isEmpty()) {
+                iterator.remove();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * @return the number of regions held in memory
+     */
+    int regionsInMemory() {
+        return regions.size();
+    }
+
+    private RegionFile region(int chunkX, int chunkZ) throws IOException {
+        long regionKey = regionKey(chunkX, chunkZ);
+        RegionFile region = regions.get(regionKey);
+        if (region == null) {
+            region = read(regionFile(regionKey));
+            regions.put(regionKey, region);
+        }
+        return region;
+    }
+
+    private Path regionFile(long regionKey) {
+        int regionX = unpack(regionKey >>> (2 * COORDINATE_BITS));
+        int regionZ = unpack(regionKey);
+        return directory.resolve("r." + regionX + "." + regionZ + ".bin");
+    }
+
+    private static RegionFile read(Path file) throws IOException {
+        RegionFile region = new RegionFile();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a region file of a known format: " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long chunkKey = pack(in.readInt(), in.readInt(), in.readInt());
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                region.chunks.put(chunkKey, data);
+            }
+        } catch (NoSuchFileException e) {
+            // no chunk of this region has data yet
+        }
+        return region;
+    }
+
+    private static void write(Path file, RegionFile region) throws IOException {
+        if (region.chunks.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Files.createDirectories(file.getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(region.chunks.size());
+            for (Map.Entry<Long, byte[]> chunk : region.chunks.entrySet()) {
+                long chunkKey = chunk.getKey();
+                out.writeInt(unpack(chunkKey >>> (2 * COORDINATE_BITS)));
+                out.writeInt(unpack(chunkKey >>> COORDINATE_BITS));
+                out.writeInt(unpack(chunkKey));
+                out.writeInt(chunk.getValue().length);
+                out.write(chunk.getValue());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long regionKey(int chunkX, int chunkZ) {
+        return pack(Math.floorDiv(chunkX, REGION_CHUNKS), 0, Math.floorDiv(chunkZ, REGION_CHUNKS));
+    }
+
+    private static long pack(int x, int y, int z) {
+        return (x & COORDINATE_MASK) << (2 * COORDINATE_BITS) | (y & COORDINATE_MASK) << COORDINATE_BITS | (z & COORDINATE_MASK);
+    }
+
+    private static int unpack(long bits) {
+        return (int) ((bits & COORDINATE_MASK) << (64 - COORDINATE_BITS) >> (64 - COORDINATE_BITS));
+    }
+
+    private static final class RegionFile {
+        private final Map<Long, byte[]> chunks = Maps.newHashMap();
+        /**
+         * Chunks of the region that are loaded, by packed position.
+         */
+        private final Set<Long> loaded = Sets.newHashSet();
+        private boolean dirty;
+    }
+}
@@ -0,0 +1,121 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CraftingPlannerTest {
+    private static final ResourceUrn LOG = urn("Log");
+    private static final ResourceUrn STONE = urn("Stone");
+    private static final ResourceUrn COAL = urn("Coal");
+    private static final ResourceUrn PLANK = urn("Plank");
+    private static final ResourceUrn STICK = urn("Stick");
+    private static final ResourceUrn HAMMER = urn("Hammer");
+    private static final ResourceUrn TABLE = urn("AssemblyTable");
+    private static final ResourceUrn TORCH = urn("Torch");
+
+    @Test
+    void craftedBlocksAreNotGathered() {
+        List<CraftingSnapshot.Recipe> recipes = ImmutableList.of(
+                recipe("Sawing", ImmutableList.of(LOG), ImmutableList.of(PLANK)),
+                recipe("Assembly", ImmutableList.of(PLANK, PLANK, STONE), ImmutableList.of(TABLE)));
+        // every block family, as the asset manager lists them; the table is a block as well
+        Set<ResourceUrn> gathered = CraftingSnapshot.gatheredBlocks(ImmutableList.of(LOG, STONE, TABLE), recipes);
+        assertEquals(ImmutableSet.of(LOG, STONE), gathered);
+
+        CraftingPlanner planner = CraftingPlanner.of(recipes, gathered);
+        // both planks are sawn separately
+        assertEquals(3, planner.getCost(TABLE, CraftingPlanner.Cost.STEPS));
+        assertEquals(3, planner.getCost(TABLE, CraftingPlanner.Cost.RAW_INPUTS));
+        assertEquals("JoshariasSurvival:AssemblyTable: 3 steps at Assembly\n"
+                        + "  - JoshariasSurvival:Plank at Sawing\n"
+                        + "    - JoshariasSurvival:Log (raw, gathered)\n"
+                        + "  - JoshariasSurvival:Plank (see above)\n"
+                        + "  - JoshariasSurvival:Stone (raw, gathered)",
+                planner.describe(TABLE, CraftingPlanner.Cost.STEPS, 10));
+        assertEquals("JoshariasSurvival:Log is a raw material, it is gathered in the world",
+                planner.describe(LOG, CraftingPlanner.Cost.STEPS, 10));
+    }
+
+    @Test
+    void theCheapestRecipeIsChosenPerCost() {
+        CraftingPlanner planner = CraftingPlanner.of(ImmutableList.of(
+                recipe("Sawing", ImmutableList.of(LOG), ImmutableList.of(PLANK)),
+                recipe("Whittling", ImmutableList.of(PLANK), ImmutableList.of(STICK)),
+                // one step more, but a single raw input less
+                recipe("Fire", ImmutableList.of(STICK, COAL), ImmutableList.of(TORCH)),
+                recipe("Burning", ImmutableList.of(LOG, LOG, COAL), ImmutableList.of(TORCH))),
+                ImmutableSet.of(LOG));
+
+        assertEquals(1, planner.getCost(TORCH, CraftingPlanner.Cost.STEPS));
+        assertEquals(2, planner.getCost(TORCH, CraftingPlanner.Cost.RAW_INPUTS));
+        assertTrue(planner.describe(TORCH, CraftingPlanner.Cost.STEPS, 10).contains(" at Burning"));
+        assertTrue(planner.describe(TORCH, CraftingPlanner.Cost.RAW_INPUTS, 10).contains(" at Fire"));
+    }
+
+    @Test
+    void returnedInputsAreRawMaterials() {
+        CraftingPlanner planner = CraftingPlanner.of(ImmutableList.of(
+                recipe("Smithing", ImmutableList.of(HAMMER, STONE), ImmutableList.of(HAMMER, TABLE))),
+                ImmutableSet.of(STONE));
+
+        assertEquals(1, planner.getCost(TABLE, CraftingPlanner.Cost.STEPS));
+        assertEquals("JoshariasSurvival:Hammer is a raw material, the processes that need it give it back, and no process makes it",
+                planner.describe(HAMMER, CraftingPlanner.Cost.STEPS, 10));
+        assertTrue(planner.describe(TABLE, CraftingPlanner.Cost.STEPS, 10).contains("- JoshariasSurvival:Hammer (returned) (raw)"));
+    }
+
+    @Test
+    void itemsOnlyMadeInACycleCannotBeCrafted() {
+        CraftingPlanner planner = CraftingPlanner.of(ImmutableList.of(
+                recipe("Splitting", ImmutableList.of(PLANK), ImmutableList.of(STICK)),
+                recipe("Gluing", ImmutableList.of(STICK), ImmutableList.of(PLANK)),
+                recipe("Assembly", ImmutableList.of(PLANK), ImmutableList.of(TABLE))),
+                ImmutableSet.of());
+
+        assertEquals(CraftingPlanner.UNCRAFTABLE, planner.getCost(TABLE, CraftingPlanner.Cost.STEPS));
+        assertEquals(CraftingPlanner.UNCRAFTABLE, planner.getCost(PLANK, CraftingPlanner.Cost.RAW_INPUTS));
+        assertEquals("JoshariasSurvival:AssemblyTable cannot be crafted from raw materials",
+                planner.describe(TABLE, CraftingPlanner.Cost.STEPS, 10));
+    }
+
+    @Test
+    void longPlansAreCutOff() {
+        CraftingPlanner planner = CraftingPlanner.of(ImmutableList.of(
+                recipe("Sawing", ImmutableList.of(LOG), ImmutableList.of(PLANK)),
+                recipe("Whittling", ImmutableList.of(PLANK), ImmutableList.of(STICK)),
+                recipe("Assembly", ImmutableList.of(STICK, STONE), ImmutableList.of(TABLE))),
+                ImmutableSet.of(LOG, STONE));
+
+        String description = planner.describe(TABLE, CraftingPlanner.Cost.STEPS, 2);
+        assertEquals(3, description.split("\n").length);
+        assertTrue(description.endsWith("\n..."));
+    }
+
+    @Test
+    void itemsAreFoundByName() {
+        CraftingPlanner planner = CraftingPlanner.of(ImmutableList.of(
+                recipe("Sawing", ImmutableList.of(LOG), ImmutableList.of(PLANK))), ImmutableSet.of());
+
+        assertEquals(ImmutableList.of(PLANK), planner.find("plank"));
+        assertEquals(ImmutableList.of(LOG), planner.find("JoshariasSurvival:Log"));
+        assertTrue(planner.find("Table").isEmpty());
+    }
+
+    private static CraftingSnapshot.Recipe recipe(String processType, List<ResourceUrn> inputs, List<ResourceUrn> outputs) {
+        return new CraftingSnapshot.Recipe(processType, inputs, outputs);
+    }
+
+    private static ResourceUrn urn(String name) {
+        return new ResourceUrn("JoshariasSurvival", name);
+    }
+}
@@ -0,0 +1,124 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.crafting;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.terasology.gestalt.assets.ResourceUrn;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecipeGraphTest {
+    private static final ResourceUrn LOG = urn("Log");
+    private static final ResourceUrn COAL = urn("Coal");
+    private static final ResourceUrn PLANK = urn("Plank");
+    private static final ResourceUrn STICK = urn("Stick");
+    private static final ResourceUrn TABLE = urn("Table");
+    private static final ResourceUrn TORCH = urn("Torch");
+
+    @Test
+    void sharedInputsAreCountedPerUse() {
+        RecipeGraph graph = RecipeGraph.builder()
+                .addRecipe(PLANK, ImmutableList.of(LOG))
+                .addRecipe(STICK, ImmutableList.of(PLANK, PLANK))
+                .addRecipe(TABLE, ImmutableList.of(PLANK, STICK))
+                .build();
+
+        assertDepthAndComplexity(graph, LOG, 0, 1);
+        assertDepthAndComplexity(graph, PLANK, 1, 2);
+        assertDepthAndComplexity(graph, STICK, 2, 5);
+        assertDepthAndComplexity(graph, TABLE, 3, 8);
+        assertEquals(2, graph.getMaxInputDepth(graph.getId(TABLE)));
+        assertEquals(5, graph.getMaxInputComplexity(graph.getId(TABLE)));
+        assertFalse(graph.isCraftable(graph.getId(LOG)));
+        assertEquals(0, graph.getRecipes(graph.getId(LOG)).length);
+    }
+
+    @Test
+    void theMostComplexRecipeCounts() {
+        RecipeGraph graph = RecipeGraph.builder()
+                .addRecipe(PLANK, ImmutableList.of(LOG))
+                .addRecipe(STICK, ImmutableList.of(PLANK, PLANK))
+                .addRecipe(TORCH, ImmutableList.of(STICK, COAL))
+                .addRecipe(TORCH, ImmutableList.of(PLANK))
+                .build();
+
+        assertDepthAndComplexity(graph, TORCH, 3, 7);
+        assertEquals(2, graph.getRecipes(graph.getId(TORCH)).length);
+    }
+
+    @Test
+    void identicalRecipesAreKeptOnce() {
+        RecipeGraph graph = RecipeGraph.builder()
+                .addRecipe(PLANK, ImmutableList.of(LOG))
+                .addRecipe(PLANK, ImmutableList.of(LOG))
+                .build();
+
+        assertEquals(1, graph.getRecipes(graph.getId(PLANK)).length);
+        assertEquals(2, graph.size());
+    }
+
+    @Test
+    void recipesWithoutInputsMakeCraftableItems() {
+        RecipeGraph graph = RecipeGraph.builder()
+                .addRecipe(COAL, ImmutableList.of())
+                .addRecipe(TORCH, ImmutableList.of(COAL))
+                .build();
+
+        assertTrue(graph.isCraftable(graph.getId(COAL)));
+        assertDepthAndComplexity(graph, COAL, 1, 1);
+        assertDepthAndComplexity(graph, TORCH, 2, 2);
+        assertArrayEquals(new int[]{graph.getId(COAL), graph.getId(TORCH)}, graph.getCraftableIds());
+    }
+
+    @Test
+    void cyclesAreCutAtTheirInputs() {
+        // planks from logs and logs back from planks, as some mods allow
+        RecipeGraph graph = RecipeGraph.builder()
+                .addRecipe(PLANK, ImmutableList.of(LOG, COAL))
+                .addRecipe(LOG, ImmutableList.of(PLANK))
+                .addRecipe(TABLE, ImmutableList.of(PLANK, LOG))
+                .build();
+
+        int plank = graph.getId(PLANK);
+        int log = graph.getId(LOG);
+        assertTrue(graph.isSameCycle(plank, log));
+        assertFalse(graph.isSameCycle(plank, graph.getId(TABLE)));
+        assertDepthAndComplexity(graph, PLANK, 1, 3);
+        assertDepthAndComplexity(graph, LOG, 1, 2);
+        assertDepthAndComplexity(graph, TABLE, 2, 6);
+    }
+
+    @Test
+    void deepChainsDoNotOverflowTheStack() {
+        int length = 100_000;
+        RecipeGraph.Builder builder = RecipeGraph.builder();
+        for (int i = 1; i < length; i++) {
+            builder.addRecipe(urn("Step" + i), ImmutableList.of(urn("Step" + (i - 1))));
+        }
+        RecipeGraph graph = builder.build();
+
+        assertDepthAndComplexity(graph, urn("Step" + (length - 1)), length - 1, length);
+    }
+
+    @Test
+    void unknownItemsHaveNoId() {
+        RecipeGraph graph = RecipeGraph.builder().addRecipe(PLANK, ImmutableList.of(LOG)).build();
+
+        assertEquals(-1, graph.getId(TABLE));
+        assertEquals(PLANK, graph.getItem(graph.getId(PLANK)));
+    }
+
+    private static void assertDepthAndComplexity(RecipeGraph graph, ResourceUrn item, int depth, long complexity) {
+        int id = graph.getId(item);
+        assertEquals(depth, graph.getDepth(id), "depth of " + item);
+        assertEquals(complexity, graph.getComplexity(id), "complexity of " + item);
+    }
+
+    private static ResourceUrn urn(String name) {
+        return new ResourceUrn("JoshariasSurvival", name);
+    }
+}
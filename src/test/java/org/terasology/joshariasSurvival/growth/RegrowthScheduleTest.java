@@ -0,0 +1,163 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegrowthScheduleTest {
+    private static final List<String> NAMES = List.of("JoshariasSurvival:JoshaberryBush", "JoshariasSurvival:Rock");
+
+    @Test
+    void positionsSurvivePacking() {
+        int[][] positions = {{0, 0, 0}, {-1, -1, -1}, {1_000_000, -64, -1_000_000}, {-Chunks.SIZE_X, 200, Chunks.SIZE_Z - 1}};
+        for (int[] position : positions) {
+            long packed = RegrowthSchedule.pack(position[0], position[1], position[2]);
+            assertEquals(position[0], RegrowthSchedule.unpackX(packed));
+            assertEquals(position[1], RegrowthSchedule.unpackY(packed));
+            assertEquals(position[2], RegrowthSchedule.unpackZ(packed));
+        }
+        assertEquals(RegrowthSchedule.pack(-1, 3, 0), RegrowthSchedule.chunkKey(RegrowthSchedule.pack(-1, 3 * Chunks.SIZE_Y + 5, 31)));
+    }
+
+    @Test
+    void regrowthsExpireOnTheirDueTick() {
+        RegrowthSchedule schedule = new RegrowthSchedule(0);
+        long a = RegrowthSchedule.pack(1, 2, 3);
+        long b = RegrowthSchedule.pack(4, 2, 3);
+        long c = RegrowthSchedule.pack(-40, 2, 100);
+        schedule.add(a, 10, 0);
+        schedule.add(b, 20, 1);
+        schedule.add(c, 10, 1);
+        assertEquals(3, schedule.size());
+        assertEquals(2, schedule.getChunkCount());
+
+        Map<Long, Long> applied = new HashMap<>();
+        schedule.advanceTo(9, (position, due, value) -> applied.put(position, schedule.getCurrentTick()));
+        assertTrue(applied.isEmpty());
+
+        schedule.advanceTo(15, (position, due, value) -> applied.put(position, schedule.getCurrentTick()));
+        assertEquals(Map.of(a, 10L, c, 10L), applied);
+        assertEquals(1, schedule.size());
+
+        schedule.advanceTo(25, (position, due, value) -> applied.put(position, schedule.getCurrentTick()));
+        assertEquals(20L, applied.get(b));
+        assertEquals(0, schedule.size());
+        assertEquals(0, schedule.getChunkCount());
+    }
+
+    @Test
+    void anEarlierRegrowthMovesTheChunksWakeUp() {
+        RegrowthSchedule schedule = new RegrowthSchedule(0);
+        long late = RegrowthSchedule.pack(1, 1, 1);
+        long early = RegrowthSchedule.pack(2, 1, 1);
+        schedule.add(late, 100, 0);
+        schedule.add(early, 5, 0);
+
+        List<Long> applied = new ArrayList<>();
+        schedule.advanceTo(50, (position, due, value) -> applied.add(position));
+        assertEquals(List.of(early), applied);
+
+        schedule.advanceTo(100, (position, due, value) -> applied.add(position));
+        assertEquals(List.of(early, late), applied);
+    }
+
+    @Test
+    void unloadedChunksAreWrittenAndCatchUpWhenLoaded() throws IOException {
+        RegrowthSchedule schedule = new RegrowthSchedule(0);
+        long soon = RegrowthSchedule.pack(-3, 70, 5);
+        long later = RegrowthSchedule.pack(-30, 127, 31);
+        long chunk = RegrowthSchedule.chunkKey(soon);
+        schedule.add(soon, 10, 1);
+        schedule.add(later, 50, 0);
+
+        Map<Long, byte[]> written = new HashMap<>();
+        schedule.unloadChunk(chunk, NAMES, written::put);
+        assertNotNull(written.get(chunk));
+        assertEquals(0, schedule.size());
+
+        // nothing expires while the chunk is away
+        List<Long> applied = new ArrayList<>();
+        schedule.advanceTo(20, (position, due, value) -> applied.add(position));
+        assertTrue(applied.isEmpty());
+
+        schedule.loadChunk(chunk, written.get(chunk), NAMES::indexOf, (position, due, value) -> {
+            applied.add(position);
+            assertEquals(1, value);
+        });
+        assertEquals(List.of(soon), applied);
+        assertEquals(1, schedule.size());
+
+        schedule.advanceTo(50, (position, due, value) -> {
+            applied.add(position);
+            assertEquals(0, value);
+        });
+        assertEquals(List.of(soon, later), applied);
+    }
+
+    @Test
+    void onlyChangedChunksAreWritten() throws IOException {
+        RegrowthSchedule schedule = new RegrowthSchedule(0);
+        long first = RegrowthSchedule.pack(0, 0, 0);
+        long second = RegrowthSchedule.pack(Chunks.SIZE_X, 0, 0);
+        schedule.add(first, 10, 0);
+        schedule.add(second, 100, 0);
+
+        Map<Long, byte[]> written = new HashMap<>();
+        schedule.writeChanged(NAMES, written::put);
+        assertEquals(2, written.size());
+
+        written.clear();
+        schedule.writeChanged(NAMES, written::put);
+        assertTrue(written.isEmpty());
+
+        // a chunk whose last regrowth expired is written as empty
+        schedule.advanceTo(10, (position, due, value) -> { });
+        schedule.writeChanged(NAMES, written::put);
+        assertEquals(1, written.size());
+        assertTrue(written.containsKey(RegrowthSchedule.chunkKey(first)));
+        assertNull(written.get(RegrowthSchedule.chunkKey(first)));
+
+        // unloading a chunk that did not change since it was written writes nothing
+        written.clear();
+        schedule.unloadChunk(RegrowthSchedule.chunkKey(second), NAMES, written::put);
+        assertTrue(written.isEmpty());
+    }
+
+    @Test
+    void regrowthsOfUnknownBlocksAreDroppedOnLoad() throws IOException {
+        RegrowthSchedule schedule = new RegrowthSchedule(0);
+        long bush = RegrowthSchedule.pack(1, 1, 1);
+        long rock = RegrowthSchedule.pack(2, 1, 1);
+        long chunk = RegrowthSchedule.chunkKey(bush);
+        schedule.add(bush, 10, 0);
+        schedule.add(rock, 10, 1);
+        Map<Long, byte[]> written = new HashMap<>();
+        schedule.unloadChunk(chunk, NAMES, written::put);
+
+        // the rock is no longer regrowing
+        List<String> remaining = List.of(NAMES.get(0));
+        schedule.loadChunk(chunk, written.get(chunk), remaining::indexOf, (position, due, value) -> { });
+        assertEquals(1, schedule.size());
+
+        List<Long> applied = new ArrayList<>();
+        schedule.advanceTo(10, (position, due, value) -> applied.add(position));
+        assertEquals(List.of(bush), applied);
+
+        // the dropped regrowth is written away with the next save
+        written.clear();
+        schedule.writeChanged(remaining, written::put);
+        assertTrue(written.containsKey(chunk));
+    }
+}
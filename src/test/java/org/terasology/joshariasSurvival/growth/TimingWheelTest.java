@@ -0,0 +1,91 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.growth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+    /**
+     * Due ticks in the tests are spread up to 2^23 ticks out, half of what the top level of the wheel spans.
+     */
+    private static final int HORIZON_BITS = 23;
+
+    @Test
+    void entriesExpireOnTheirDueTick() {
+        TimingWheel wheel = new TimingWheel(100);
+        wheel.add(1, 101, 10);
+        wheel.add(2, 105, 20);
+        List<long[]> expired = new ArrayList<>();
+
+        wheel.advanceTo(104, (key, due, value) -> expired.add(new long[]{key, due, value, wheel.getCurrentTick()}));
+        assertEquals(1, expired.size());
+        assertEntry(expired.get(0), 1, 101, 10);
+        assertEquals(101, expired.get(0)[3]);
+
+        wheel.advanceTo(105, (key, due, value) -> expired.add(new long[]{key, due, value, wheel.getCurrentTick()}));
+        assertEquals(2, expired.size());
+        assertEntry(expired.get(1), 2, 105, 20);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void entriesAlreadyDueExpireOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(50);
+        wheel.add(7, 10, 0);
+        wheel.add(8, 50, 0);
+        List<Long> expiredAt = new ArrayList<>();
+
+        wheel.advanceTo(51, (key, due, value) -> expiredAt.add(wheel.getCurrentTick()));
+        assertEquals(List.of(51L, 51L), expiredAt);
+    }
+
+    @Test
+    void everyEntryExpiresExactlyOnceAtItsDueTick() {
+        Random random = new Random(42);
+        long start = 1_000_003;
+        TimingWheel wheel = new TimingWheel(start);
+        int count = 5000;
+        long[] dues = new long[count];
+        for (int i = 0; i < count; i++) {
+            // spread over every level of the wheel
+            int span = 1 << (1 + random.nextInt(HORIZON_BITS));
+            dues[i] = start + 1 + random.nextInt(span);
+            wheel.add(i, dues[i], i);
+        }
+        assertEquals(count, wheel.size());
+
+        int[] expirations = new int[count];
+        long end = start + (1 << HORIZON_BITS);
+        for (long tick = start; tick < end; tick += 1 + random.nextInt(5000)) {
+            long target = tick;
+            wheel.advanceTo(target, (key, due, value) -> {
+                int i = (int) key;
+                expirations[i]++;
+                assertEquals(dues[i], due);
+                assertEquals(i, value);
+                // advancing several ticks at once hands out each entry during its own tick
+                assertEquals(dues[i], wheel.getCurrentTick());
+                assertTrue(due <= target);
+            });
+        }
+        wheel.advanceTo(end, (key, due, value) -> expirations[(int) key]++);
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(1, expirations[i], "entry " + i);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    private static void assertEntry(long[] entry, long key, long due, int value) {
+        assertEquals(key, entry[0]);
+        assertEquals(due, entry[1]);
+        assertEquals(value, entry[2]);
+    }
+}
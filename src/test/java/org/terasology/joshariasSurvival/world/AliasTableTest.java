@@ -0,0 +1,69 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AliasTableTest {
+    /**
+     * Evenly spaced random values, so the share of each outcome is exact up to the spacing.
+     */
+    private static final int SAMPLES = 100_000;
+    private static final double TOLERANCE = 1e-3;
+
+    @Test
+    void weightsBelowOneLeaveTheRestToNone() {
+        double[] shares = shares(new AliasTable(new float[]{0.1f, 0f, 0.25f}), 3);
+        assertArrayEquals(new double[]{0.1, 0, 0.25}, new double[]{shares[0], shares[1], shares[2]}, TOLERANCE);
+        assertEquals(0.65, shares[3], TOLERANCE);
+    }
+
+    @Test
+    void weightsAboveOneAreScaledDown() {
+        double[] shares = shares(new AliasTable(new float[]{1f, 3f}), 2);
+        assertArrayEquals(new double[]{0.25, 0.75, 0}, shares, TOLERANCE);
+    }
+
+    @Test
+    void manyOutcomesKeepTheirWeights() {
+        float[] weights = new float[200];
+        double[] expected = new double[weights.length + 1];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (i % 7) * 0.001f;
+            expected[i] = weights[i];
+            sum += weights[i];
+        }
+        expected[weights.length] = 1 - sum;
+        assertArrayEquals(expected, shares(new AliasTable(weights), weights.length), TOLERANCE);
+    }
+
+    @Test
+    void withoutPositiveWeightsNothingIsPicked() {
+        assertArrayEquals(new double[]{0, 0, 1}, shares(new AliasTable(new float[]{0f, -1f}), 2), TOLERANCE);
+        assertArrayEquals(new double[]{1}, shares(new AliasTable(new float[0]), 0), TOLERANCE);
+    }
+
+    @Test
+    void aSureOutcomeIsAlwaysPicked() {
+        AliasTable table = new AliasTable(new float[]{0f, 1f});
+        assertEquals(1, table.sample(0f));
+        assertEquals(1, table.sample(0.5f));
+        assertEquals(1, table.sample(1f));
+    }
+
+    /**
+     * @return the share of each outcome over evenly spaced random values, with the share of {@link AliasTable#NONE} last
+     */
+    private static double[] shares(AliasTable table, int outcomes) {
+        double[] shares = new double[outcomes + 1];
+        for (int i = 0; i < SAMPLES; i++) {
+            int outcome = table.sample((i + 0.5f) / SAMPLES);
+            shares[outcome == AliasTable.NONE ? outcomes : outcome] += 1.0 / SAMPLES;
+        }
+        return shares;
+    }
+}
@@ -0,0 +1,58 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.joml.Vector3ic;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForagableCaveFoodProviderTest {
+    private static final int CHUNKS_PER_SIDE = 8;
+
+    @Test
+    void surfaceAndCaveFloorsAreNeverBothCandidates() {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        // at full density, every candidate with a type is placed
+        ForagableFoodProvider surfaceProvider = ForagingFixture.provider(1.0f);
+        ForagableCaveFoodProvider caveProvider = ForagingFixture.caveProvider(1.0f);
+
+        Set<Vector3ic> surface = new HashSet<>();
+        Set<Vector3ic> caves = new HashSet<>();
+        for (int i = 0; i < fixture.size(); i++) {
+            surface.addAll(fixture.process(surfaceProvider, i).getWorldEntries().keySet());
+            caves.addAll(fixture.processCaves(caveProvider, i).getWorldEntries().keySet());
+        }
+        assertFalse(surface.isEmpty());
+        assertFalse(caves.isEmpty());
+
+        int shallowCaves = 0;
+        for (Vector3ic position : caves) {
+            assertFalse(surface.contains(position), "placed by both providers: " + position);
+            if (position.y() >= ForagingFixture.SEA_LEVEL) {
+                assertTrue(ForagingFixture.hasShallowCave(position.x(), position.z()), "not a cave floor: " + position);
+                shallowCaves++;
+            }
+        }
+        assertTrue(shallowCaves > 0, "no cave floor above sea level was placed on");
+    }
+
+    @Test
+    void caveFloorsAboveSeaLevelAreLeftToTheCaveProvider() {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        ForagableFoodProvider surfaceProvider = ForagingFixture.provider(1.0f);
+        int checked = 0;
+        for (int i = 0; i < fixture.size(); i++) {
+            for (Vector3ic position : fixture.process(surfaceProvider, i).getWorldEntries().keySet()) {
+                // only the terrain surface itself, never the cave floor under it
+                assertTrue(position.y() == ForagingFixture.height(position.x(), position.z()) + 1, "not the surface: " + position);
+                checked++;
+            }
+        }
+        assertTrue(checked > 0);
+    }
+}
@@ -0,0 +1,43 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.terasology.core.world.CoreBiome;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ForagableFoodTypeTest {
+    @Test
+    void qualifiedBiomeKeysWinOverUnqualifiedOnes() {
+        // the unqualified key comes first, so a walk in map order would pick it
+        Map<String, Float> biomes = new LinkedHashMap<>();
+        biomes.put("forest", 0.5f);
+        biomes.put("CoreWorlds:Forest", 0.25f);
+        ForagableFoodType type = type(biomes);
+
+        assertEquals(0.25f, type.getProbability(CoreBiome.FOREST));
+    }
+
+    @Test
+    void biomeKeysMatchIgnoringCaseWithOrWithoutModule() {
+        ForagableFoodType type = type(ImmutableMap.of("coreworlds:plains", 0.5f, "DESERT", 0.25f, "Other:Snow", 0.75f));
+
+        assertEquals(0.5f, type.getProbability(CoreBiome.PLAINS));
+        assertEquals(0.25f, type.getProbability(CoreBiome.DESERT));
+        // a key of another module does not apply
+        assertEquals(0.1f, type.getProbability(CoreBiome.SNOW));
+    }
+
+    private static ForagableFoodType type(Map<String, Float> biomeProbabilities) {
+        ForagableFoodDefinitionComponent definition = new ForagableFoodDefinitionComponent();
+        definition.probability = 1f;
+        definition.biomeProbabilities = biomeProbabilities;
+        definition.defaultBiomeProbability = 0.1f;
+        return new ForagableFoodType(0, "JoshariasSurvival:Test", definition);
+    }
+}
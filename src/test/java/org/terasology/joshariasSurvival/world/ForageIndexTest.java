@@ -0,0 +1,168 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.Test;
+import org.terasology.engine.world.chunks.Chunks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForageIndexTest {
+    private static final ForagableFoodTypes TYPES = types("JoshariasSurvival:ForagableJoshaberry", "JoshariasSurvival:ForagableRock");
+
+    @Test
+    void recordedChunksAreLookedUpByPosition() {
+        ForageIndex index = new ForageIndex();
+        record(index, 0, 0, 0, new int[][]{{1, 2, 3, 0}, {31, 63, 31, 1}});
+        record(index, -1, 0, -1, new int[][]{{0, 0, 0, 1}});
+
+        assertEquals(0, index.typeIdAt(1, 2, 3));
+        assertEquals(1, index.typeIdAt(31, 63, 31));
+        assertEquals(1, index.typeIdAt(-Chunks.SIZE_X, 0, -Chunks.SIZE_Z));
+        assertEquals(-1, index.typeIdAt(1, 2, 4));
+        assertEquals(3, index.size());
+
+        index.forgetChunk(0, 0, 0);
+        assertEquals(-1, index.typeIdAt(1, 2, 3));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void singlePlacementsAreAddedAndRemoved() {
+        ForageIndex index = new ForageIndex();
+        index.add(5, 6, 7, 1);
+        index.add(-5, 6, 7, 0);
+
+        assertEquals(1, index.typeIdAt(5, 6, 7));
+        assertTrue(index.remove(5, 6, 7));
+        assertFalse(index.remove(5, 6, 7));
+        assertEquals(-1, index.typeIdAt(5, 6, 7));
+        assertEquals(0, index.typeIdAt(-5, 6, 7));
+        assertEquals(1, index.findNearest(0, 0, 0, 5, id -> true).size());
+    }
+
+    @Test
+    void nearestMatchesAFullScan() {
+        Random random = new Random(42);
+        ForageIndex index = new ForageIndex();
+        List<int[]> placements = new ArrayList<>();
+        // chunks spread over several regions on both sides of the origin, some far out
+        for (int chunk = 0; chunk < 120; chunk++) {
+            int chunkX = random.nextInt(80) - 40;
+            int chunkZ = random.nextInt(80) - 40;
+            int chunkY = random.nextInt(2);
+            int count = 1 + random.nextInt(6);
+            int[][] chunkPlacements = new int[count][];
+            for (int i = 0; i < count; i++) {
+                chunkPlacements[i] = new int[]{random.nextInt(Chunks.SIZE_X), random.nextInt(Chunks.SIZE_Y),
+                        random.nextInt(Chunks.SIZE_Z), random.nextInt(2)};
+            }
+            index.forgetChunk(chunkX, chunkY, chunkZ);
+            placements.removeIf(p -> p[0] >> Chunks.POWER_X == chunkX && p[1] >> Chunks.POWER_Y == chunkY
+                    && p[2] >> Chunks.POWER_Z == chunkZ);
+            record(index, chunkX, chunkY, chunkZ, chunkPlacements);
+            for (int[] placement : chunkPlacements) {
+                int[] world = {(chunkX << Chunks.POWER_X) + placement[0], (chunkY << Chunks.POWER_Y) + placement[1],
+                        (chunkZ << Chunks.POWER_Z) + placement[2], placement[3]};
+                placements.removeIf(p -> p[0] == world[0] && p[1] == world[1] && p[2] == world[2]);
+                placements.add(world);
+            }
+        }
+
+        for (int query = 0; query < 50; query++) {
+            int x = random.nextInt(3000) - 1500;
+            int y = random.nextInt(128);
+            int z = random.nextInt(3000) - 1500;
+            IntPredicate filter = query % 3 == 0 ? id -> id == 1 : id -> true;
+            List<Long> expected = distances(placements, x, y, z, filter);
+
+            List<ForageIndex.Hit> nearest = index.findNearest(x, y, z, 7, filter);
+            assertEquals(expected.subList(0, 7), hitDistances(nearest), "query " + query);
+
+            int radius = 200;
+            List<ForageIndex.Hit> within = index.findWithin(x, y, z, radius, filter);
+            assertEquals(expected.stream().filter(d -> d <= (long) radius * radius).count(), within.size(), "query " + query);
+            within.forEach(hit -> assertTrue(filter.test(hit.getTypeId())));
+        }
+    }
+
+    @Test
+    void nothingIsFoundInAnEmptyIndex() {
+        ForageIndex index = new ForageIndex();
+
+        assertTrue(index.findNearest(0, 0, 0, 3, id -> true).isEmpty());
+        assertTrue(index.findWithin(0, 0, 0, 100, id -> true).isEmpty());
+    }
+
+    @Test
+    void savedChunksLoadByTypeName() throws IOException {
+        ForageIndex index = new ForageIndex();
+        record(index, 2, 0, -3, new int[][]{{1, 2, 3, 0}, {4, 5, 6, 1}, {7, 8, 9, 1}});
+        assertNull(index.save(0, 0, 0, TYPES));
+        byte[] data = index.save(2, 0, -3, TYPES);
+
+        // the types were renumbered and the Joshaberry was removed since the chunk was saved
+        ForageIndex loaded = new ForageIndex();
+        ForagableFoodTypes current = types("JoshariasSurvival:ForagableMushroom", "JoshariasSurvival:ForagableRock");
+        loaded.load(2, 0, -3, data, name -> current.getTypes().stream()
+                .filter(type -> type.getName().equals(name)).mapToInt(ForagableFoodType::getId).findFirst().orElse(-1));
+
+        int minX = 2 << Chunks.POWER_X;
+        int minZ = -3 << Chunks.POWER_Z;
+        assertEquals(-1, loaded.typeIdAt(minX + 1, 2, minZ + 3));
+        assertEquals(1, loaded.typeIdAt(minX + 4, 5, minZ + 6));
+        assertEquals(1, loaded.typeIdAt(minX + 7, 8, minZ + 9));
+        assertEquals(2, loaded.size());
+    }
+
+    private static void record(ForageIndex index, int chunkX, int chunkY, int chunkZ, int[][] placements) {
+        char[] locals = new char[placements.length];
+        byte[] types = new byte[placements.length];
+        for (int i = 0; i < placements.length; i++) {
+            locals[i] = (char) ForageIndex.localIndex(placements[i][0], placements[i][1], placements[i][2]);
+            types[i] = (byte) placements[i][3];
+        }
+        index.recordChunk(chunkX, chunkY, chunkZ, locals, types, placements.length);
+    }
+
+    private static List<Long> distances(List<int[]> placements, int x, int y, int z, IntPredicate filter) {
+        List<Long> result = new ArrayList<>();
+        for (int[] p : placements) {
+            if (filter.test(p[3])) {
+                long dx = p[0] - x;
+                long dy = p[1] - y;
+                long dz = p[2] - z;
+                result.add(dx * dx + dy * dy + dz * dz);
+            }
+        }
+        result.sort(Comparator.naturalOrder());
+        return result;
+    }
+
+    private static List<Long> hitDistances(List<ForageIndex.Hit> hits) {
+        List<Long> result = new ArrayList<>();
+        for (ForageIndex.Hit hit : hits) {
+            result.add(hit.getDistanceSquared());
+        }
+        return result;
+    }
+
+    private static ForagableFoodTypes types(String... names) {
+        ImmutableList.Builder<ForagableFoodType> types = ImmutableList.builder();
+        for (int id = 0; id < names.length; id++) {
+            types.add(new ForagableFoodType(id, names[id], new ForagableFoodDefinitionComponent()));
+        }
+        return new ForagableFoodTypes(types.build());
+    }
+}
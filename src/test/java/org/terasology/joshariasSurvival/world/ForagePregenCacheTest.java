@@ -0,0 +1,178 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.chunks.Chunks;
+import org.terasology.engine.world.generation.Border3D;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForagePregenCacheTest {
+    private static final long KEY = 42;
+    private static final int CHUNKS_PER_SIDE = 3;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void placementsAreReadBackAfterReopening() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        ForagableFoodProvider provider = ForagingFixture.provider(1.0f);
+        Path file = directory.resolve("pregen.bin");
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            for (int i = 0; i < fixture.size(); i++) {
+                put(cache, fixture.regions[i], fixture.process(provider, i));
+            }
+        }
+
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            assertEquals(fixture.size(), cache.size());
+            for (int i = 0; i < fixture.size(); i++) {
+                ForagableFoodFacet facet = fixture.process(provider, i);
+                BlockRegion region = fixture.regions[i];
+                ForagePregenCache.Placements placements = get(cache, region);
+                assertNotNull(placements);
+                assertEquals(facet.size(), placements.size());
+                for (int j = 0; j < facet.size(); j++) {
+                    assertEquals(facet.getRelativeX(j), placements.getX(j));
+                    assertEquals(facet.getRelativeY(j), placements.getY(j));
+                    assertEquals(facet.getRelativeZ(j), placements.getZ(j));
+                    assertEquals(facet.getTypeId(j), placements.getTypeId(j));
+                }
+            }
+            assertNull(cache.get(CHUNKS_PER_SIDE, 0, 0));
+        }
+    }
+
+    @Test
+    void theRasterizerPlacesTheSameBlocksFromTheCache() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        ForagableFoodProvider provider = ForagingFixture.provider(1.0f);
+        StandIns.WriteLog generated = fixture.generateAll(1.0f);
+
+        try (ForagePregenCache cache = ForagePregenCache.open(directory.resolve("pregen.bin"), KEY)) {
+            for (int i = 0; i < fixture.size(); i++) {
+                put(cache, fixture.regions[i], fixture.process(provider, i));
+            }
+            ForagePregenCacheHolder holder = new ForagePregenCacheHolder();
+            holder.set(cache);
+            ForagableFoodRasterizer rasterizer = fixture.rasterizer(holder);
+
+            StandIns.WriteLog cached = new StandIns.WriteLog();
+            for (int i = 0; i < fixture.size(); i++) {
+                // an empty facet, so that only the cache can place anything
+                fixture.rasterize(rasterizer, i, new ForagableFoodFacet(fixture.regions[i], new Border3D(0, 0, 0),
+                        ForagingFixture.FOOD_TYPES), cached);
+            }
+            assertTrue(generated.getCount() > 0);
+            assertEquals(generated.getCount(), cached.getCount());
+            assertEquals(generated.getHash(), cached.getHash());
+        }
+    }
+
+    @Test
+    void aDifferentKeyEmptiesTheCache() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(1);
+        Path file = directory.resolve("pregen.bin");
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            put(cache, fixture.regions[0], fixture.process(ForagingFixture.provider(1.0f), 0));
+        }
+
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY + 1)) {
+            assertEquals(KEY + 1, cache.getKey());
+            assertEquals(0, cache.size());
+        }
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void aChunkWrittenTwiceIsReadFromItsLastRecord() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(1);
+        BlockRegion region = fixture.regions[0];
+        ForagableFoodFacet empty = new ForagableFoodFacet(region, new Border3D(0, 0, 0), ForagingFixture.FOOD_TYPES);
+        ForagableFoodFacet full = fixture.process(ForagingFixture.provider(1.0f), 0);
+        assertTrue(full.size() > 0);
+
+        Path file = directory.resolve("pregen.bin");
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            put(cache, region, full);
+            put(cache, region, empty);
+            assertEquals(1, cache.size());
+            assertEquals(0, get(cache, region).size());
+        }
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            assertEquals(0, get(cache, region).size());
+        }
+    }
+
+    @Test
+    void anIncompleteLastRecordIsDropped() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(2);
+        ForagableFoodProvider provider = ForagingFixture.provider(1.0f);
+        Path file = directory.resolve("pregen.bin");
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            put(cache, fixture.regions[0], fixture.process(provider, 0));
+            put(cache, fixture.regions[1], fixture.process(provider, 1));
+        }
+
+        // as if the game died while the last record was being written: the end position falls inside it
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer end = ByteBuffer.allocate(4);
+            channel.read(end, 16);
+            end.flip();
+            int storedEnd = end.getInt();
+            end.clear();
+            end.putInt(storedEnd - 1).flip();
+            channel.write(end, 16);
+        }
+
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            assertEquals(1, cache.size());
+            assertNotNull(get(cache, fixture.regions[0]));
+            assertNull(get(cache, fixture.regions[1]));
+        }
+    }
+
+    @Test
+    void anOpenCacheCannotBeOpenedAgain() throws IOException {
+        Path file = directory.resolve("pregen.bin");
+        try (ForagePregenCache cache = ForagePregenCache.open(file, KEY)) {
+            assertThrows(IOException.class, () -> ForagePregenCache.open(file, KEY));
+        }
+        ForagePregenCache.open(file, KEY).close();
+    }
+
+    @Test
+    void aClosedCacheIsNotWritten() throws IOException {
+        ForagingFixture fixture = new ForagingFixture(1);
+        ForagePregenCache cache = ForagePregenCache.open(directory.resolve("pregen.bin"), KEY);
+        cache.close();
+        assertThrows(IOException.class, () -> put(cache, fixture.regions[0],
+                fixture.process(ForagingFixture.provider(1.0f), 0)));
+        assertFalse(cache.contains(0, 0, 0));
+    }
+
+    private static void put(ForagePregenCache cache, BlockRegion region, ForagableFoodFacet facet) throws IOException {
+        cache.put(region.minX() >> Chunks.POWER_X, region.minY() >> Chunks.POWER_Y, region.minZ() >> Chunks.POWER_Z, facet);
+    }
+
+    private static ForagePregenCache.Placements get(ForagePregenCache cache, BlockRegion region) {
+        return cache.get(region.minX() >> Chunks.POWER_X, region.minY() >> Chunks.POWER_Y, region.minZ() >> Chunks.POWER_Z);
+    }
+}
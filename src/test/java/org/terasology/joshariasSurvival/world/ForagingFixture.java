@@ -0,0 +1,307 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.terasology.biomesAPI.Biome;
+import org.terasology.core.world.CoreBiome;
+import org.terasology.core.world.generator.facets.BiomeFacet;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.chunks.Chunk;
+import org.terasology.engine.world.generation.Border3D;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Region;
+import org.terasology.engine.world.generation.WorldFacet;
+import org.terasology.engine.world.generation.facets.ElevationFacet;
+import org.terasology.engine.world.generation.facets.SeaLevelFacet;
+import org.terasology.engine.world.generation.facets.SurfacesFacet;
+
+import static org.terasology.joshariasSurvival.world.StandIns.CHUNK_SIZE_X;
+import static org.terasology.joshariasSurvival.world.StandIns.CHUNK_SIZE_Y;
+import static org.terasology.joshariasSurvival.world.StandIns.CHUNK_SIZE_Z;
+
+/**
+ * A synthetic world for the foraging benchmarks and tests: a square of chunk regions with rolling terrain that dips
+ * below sea level, a second (cave) surface deep down in part of the columns and one just under the terrain in part of
+ * the high columns, so above sea level, patchy biomes, and some surface spots already taken by other rasterizers.
+ */
+final class ForagingFixture {
+    static final long SEED = 0x5eed_f00dL;
+    static final int SEA_LEVEL = 32;
+
+    static final short AIR = 0;
+    static final short ROCK = 1;
+    static final short JOSHABERRY = 2;
+    static final short STONE = 3;
+
+    static final int JOSHABERRY_TYPE = 0;
+    static final int ROCK_TYPE = 1;
+
+    /**
+     * The types defined by the module's foraging prefabs, in the same order {@link ForagableFoodTypes#load()} gives.
+     */
+    static final ForagableFoodTypes FOOD_TYPES = new ForagableFoodTypes(ImmutableList.of(
+            new ForagableFoodType(JOSHABERRY_TYPE, "JoshariasSurvival:ForagableJoshaberry", definition(0.005f, false)),
+            new ForagableFoodType(ROCK_TYPE, "JoshariasSurvival:ForagableRock", definition(0.2f, false))));
+
+    /**
+     * The same types, also placed on cave floors.
+     */
+    static final ForagableFoodTypes CAVE_FOOD_TYPES = new ForagableFoodTypes(ImmutableList.of(
+            new ForagableFoodType(JOSHABERRY_TYPE, "JoshariasSurvival:ForagableJoshaberry", definition(0.005f, true)),
+            new ForagableFoodType(ROCK_TYPE, "JoshariasSurvival:ForagableRock", definition(0.2f, true))));
+
+    /**
+     * How far below the terrain the cave floors above sea level are.
+     */
+    static final int SHALLOW_CAVE_DEPTH = 4;
+
+    final int chunksPerSide;
+    final BlockRegion[] regions;
+    final GeneratingRegion[] generatingRegions;
+    final short[][] terrain;
+    final Block[] blocksById;
+
+    ForagingFixture(int chunksPerSide) {
+        this(0, 0, chunksPerSide);
+    }
+
+    /**
+     * Creates the square of chunks starting at the given chunk position, so that a larger world can be covered a square
+     * at a time without keeping all of it in memory.
+     */
+    ForagingFixture(int originChunkX, int originChunkZ, int chunksPerSide) {
+        this.chunksPerSide = chunksPerSide;
+        int count = chunksPerSide * chunksPerSide;
+        regions = new BlockRegion[count];
+        generatingRegions = new GeneratingRegion[count];
+        terrain = new short[count][];
+
+        blocksById = new Block[4];
+        for (short id = 0; id < blocksById.length; id++) {
+            blocksById[id] = new Block();
+            blocksById[id].setId(id);
+        }
+
+        for (int cz = 0; cz < chunksPerSide; cz++) {
+            for (int cx = 0; cx < chunksPerSide; cx++) {
+                int index = cx + cz * chunksPerSide;
+                int chunkX = originChunkX + cx;
+                int chunkZ = originChunkZ + cz;
+                BlockRegion region = new BlockRegion(chunkX * CHUNK_SIZE_X, 0, chunkZ * CHUNK_SIZE_Z,
+                        (chunkX + 1) * CHUNK_SIZE_X - 1, CHUNK_SIZE_Y - 1, (chunkZ + 1) * CHUNK_SIZE_Z - 1);
+                regions[index] = region;
+                generatingRegions[index] = StandIns.generatingRegion(region, ImmutableMap.of(
+                        SurfacesFacet.class, surfaces(region),
+                        BiomeFacet.class, biomes(region),
+                        SeaLevelFacet.class, seaLevel(region),
+                        ElevationFacet.class, elevation(region)));
+                terrain[index] = terrain(region);
+            }
+        }
+    }
+
+    /**
+     * Creates a rasterizer wired to the fixture's blocks.
+     */
+    ForagableFoodRasterizer rasterizer() {
+        return rasterizer(null);
+    }
+
+    /**
+     * Creates a rasterizer wired to the fixture's blocks, reading pregenerated placements from the given holder.
+     */
+    ForagableFoodRasterizer rasterizer(ForagePregenCacheHolder pregenCache) {
+        ForagableFoodRasterizer rasterizer = new ForagableFoodRasterizer();
+        Block[][] blocks = new Block[FOOD_TYPES.size()][];
+        blocks[JOSHABERRY_TYPE] = new Block[]{blocksById[JOSHABERRY]};
+        blocks[ROCK_TYPE] = new Block[]{blocksById[ROCK]};
+        rasterizer.initialize(AIR, blocks, null, pregenCache);
+        return rasterizer;
+    }
+
+    /**
+     * Creates a provider seeded with {@link #SEED} and configured with the given density, set up like the one a game
+     * generates with.
+     */
+    static ForagableFoodProvider provider(float density) {
+        return configure(new ForagableFoodProvider(FOOD_TYPES), density);
+    }
+
+    /**
+     * Creates a provider seeded with {@link #SEED} and configured with the given density, caching candidates for the
+     * given number of regions once the configuration changes, like the world preview does.
+     */
+    static ForagableFoodProvider provider(float density, int cachedRegions) {
+        return configure(new ForagableFoodProvider(FOOD_TYPES, cachedRegions), density);
+    }
+
+    private static ForagableFoodProvider configure(ForagableFoodProvider provider, float density) {
+        ForagableFoodProvider.ForagableFoodDensityConfiguration configuration =
+                new ForagableFoodProvider.ForagableFoodDensityConfiguration();
+        configuration.density = density;
+        provider.setConfiguration(configuration);
+        provider.setSeed(SEED);
+        return provider;
+    }
+
+    /**
+     * Creates a cave provider for {@link #CAVE_FOOD_TYPES}, seeded with {@link #SEED} and with the given density both
+     * in caves and deep caves.
+     */
+    static ForagableCaveFoodProvider caveProvider(float density) {
+        ForagableCaveFoodProvider provider = new ForagableCaveFoodProvider(CAVE_FOOD_TYPES);
+        ForagableCaveFoodProvider.ForagableCaveFoodConfiguration configuration =
+                new ForagableCaveFoodProvider.ForagableCaveFoodConfiguration();
+        configuration.caveDensity = density;
+        configuration.deepCaveDensity = density;
+        provider.setConfiguration(configuration);
+        provider.setSeed(SEED);
+        return provider;
+    }
+
+    int size() {
+        return regions.length;
+    }
+
+    /**
+     * Runs the provider on the given chunk region and returns the facet it produced.
+     */
+    ForagableFoodFacet process(ForagableFoodProvider provider, int index) {
+        GeneratingRegion region = generatingRegions[index];
+        provider.process(region);
+        return region.getRegionFacet(ForagableFoodFacet.class);
+    }
+
+    /**
+     * Runs the cave provider alone on the given chunk region, on an empty facet, and returns what it placed.
+     */
+    ForagableFoodFacet processCaves(ForagableCaveFoodProvider provider, int index) {
+        GeneratingRegion region = generatingRegions[index];
+        region.setRegionFacet(ForagableFoodFacet.class, new ForagableFoodFacet(regions[index], new Border3D(0, 0, 0),
+                CAVE_FOOD_TYPES));
+        provider.process(region);
+        return region.getRegionFacet(ForagableFoodFacet.class);
+    }
+
+    /**
+     * Rasterizes a previously produced facet into a stand-in chunk, recording the writes into the given log.
+     */
+    void rasterize(ForagableFoodRasterizer rasterizer, int index, ForagableFoodFacet facet, StandIns.WriteLog log) {
+        BlockRegion region = regions[index];
+        Region chunkRegion = StandIns.region(region, ImmutableMap.<Class<? extends WorldFacet>, WorldFacet>of(
+                ForagableFoodFacet.class, facet));
+        Chunk chunk = StandIns.chunk(terrain[index], blocksById, log, region.minX(), region.minY(), region.minZ());
+        rasterizer.generateChunk(chunk, chunkRegion);
+    }
+
+    /**
+     * Generates every chunk of the fixture with the given density and fingerprints the placed blocks.
+     */
+    StandIns.WriteLog generateAll(float density) {
+        ForagableFoodProvider provider = provider(density);
+        ForagableFoodRasterizer rasterizer = rasterizer();
+        StandIns.WriteLog log = new StandIns.WriteLog();
+        for (int i = 0; i < size(); i++) {
+            rasterize(rasterizer, i, process(provider, i), log);
+        }
+        return log;
+    }
+
+    private static ForagableFoodDefinitionComponent definition(float probability, boolean onCaveFloors) {
+        ForagableFoodDefinitionComponent definition = new ForagableFoodDefinitionComponent();
+        definition.probability = probability;
+        definition.onCaveFloors = onCaveFloors;
+        definition.biomeProbabilities = ImmutableMap.<String, Float>builder()
+                .put("CoreWorlds:Forest", 0.3f)
+                .put("CoreWorlds:Plains", 0.2f)
+                .put("CoreWorlds:Mountains", 0.2f)
+                .put("CoreWorlds:Snow", 0.001f)
+                .put("CoreWorlds:Beach", 0.001f)
+                .put("CoreWorlds:Ocean", 0f)
+                .put("CoreWorlds:Desert", 0.001f).build();
+        definition.defaultBiomeProbability = 0.1f;
+        return definition;
+    }
+
+    private static SurfacesFacet surfaces(BlockRegion region) {
+        SurfacesFacet facet = new SurfacesFacet(region, new Border3D(0, 1, 0));
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int x = region.minX(); x <= region.maxX(); x++) {
+                int height = height(x, z);
+                facet.setWorld(x, height, z, true);
+                if (hash(x, z, 7) % 4 == 0) {
+                    facet.setWorld(x, height - 20, z, true);
+                }
+                if (hasShallowCave(x, z)) {
+                    facet.setWorld(x, height - SHALLOW_CAVE_DEPTH, z, true);
+                }
+            }
+        }
+        return facet;
+    }
+
+    private static BiomeFacet biomes(BlockRegion region) {
+        BiomeFacet facet = new BiomeFacet(region, new Border3D(0, 0, 0));
+        CoreBiome[] biomes = CoreBiome.values();
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int x = region.minX(); x <= region.maxX(); x++) {
+                Biome biome = biomes[hash(x >> 5, z >> 5, 3) % biomes.length];
+                facet.setWorld(x, z, biome);
+            }
+        }
+        return facet;
+    }
+
+    private static ElevationFacet elevation(BlockRegion region) {
+        ElevationFacet facet = new ElevationFacet(region, new Border3D(0, 0, 0));
+        for (int z = region.minZ(); z <= region.maxZ(); z++) {
+            for (int x = region.minX(); x <= region.maxX(); x++) {
+                facet.setWorld(x, z, height(x, z));
+            }
+        }
+        return facet;
+    }
+
+    private static SeaLevelFacet seaLevel(BlockRegion region) {
+        SeaLevelFacet facet = new SeaLevelFacet(region, new Border3D(0, 0, 0));
+        facet.setSeaLevel(SEA_LEVEL);
+        return facet;
+    }
+
+    private static short[] terrain(BlockRegion region) {
+        short[] ids = new short[CHUNK_SIZE_X * CHUNK_SIZE_Y * CHUNK_SIZE_Z];
+        for (int z = 0; z < CHUNK_SIZE_Z; z++) {
+            for (int x = 0; x < CHUNK_SIZE_X; x++) {
+                int worldX = region.minX() + x;
+                int worldZ = region.minZ() + z;
+                int height = height(worldX, worldZ) - region.minY();
+                if (height >= 0 && height < CHUNK_SIZE_Y && hash(worldX, worldZ, 11) % 10 == 0) {
+                    ids[StandIns.index(x, height, z)] = STONE;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return whether the column has a cave floor just under the terrain, at or above sea level
+     */
+    static boolean hasShallowCave(int x, int z) {
+        return height(x, z) - SHALLOW_CAVE_DEPTH + 1 >= SEA_LEVEL && hash(x, z, 13) % 3 == 0;
+    }
+
+    static int height(int x, int z) {
+        return SEA_LEVEL - 4 + (int) (10 * Math.sin(x * 0.05) * Math.cos(z * 0.07)) + hash(x, z, 1) % 3;
+    }
+
+    private static int hash(int x, int z, int salt) {
+        int hash = x * 0x27d4eb2d ^ z * 0x165667b1 ^ salt * 0x9e3779b9;
+        hash ^= hash >>> 15;
+        hash *= 0x2c1b3c6d;
+        hash ^= hash >>> 12;
+        return hash >>> 1;
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the foraging plugins on many generator threads at once, with one provider and one rasterizer shared by all
+ * threads as the world generator does, and checks that every chunk gets exactly the blocks a single thread places.
+ * <p>
+ * The world is covered one {@link ForagingFixture} square at a time, so thousands of chunks are generated without
+ * keeping all of them in memory. While the parallel rounds run, the provider's configuration object is swapped for
+ * equal copies, to catch regions that read it more than once; that also turns the preview's candidate cache on, which
+ * is kept smaller than a square so that entries get evicted while in use.
+ */
+class ForagingParallelGenerationTest {
+    private static final float[] DENSITIES = {0.05f, 0.4f, 1.0f};
+    private static final int CHUNKS_PER_SQUARE = 16;
+    /**
+     * Squares per side of the generated world, for 64 by 64 chunks in total.
+     */
+    private static final int SQUARES_PER_SIDE = 4;
+    private static final int[] CACHED_REGIONS = {0, CHUNKS_PER_SQUARE * CHUNKS_PER_SQUARE / 4};
+    private static final int ROUNDS = 2;
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    @Test
+    void parallelGenerationPlacesTheSameBlocksAsSequentialGeneration() throws InterruptedException, ExecutionException {
+        for (float density : DENSITIES) {
+            ForagableFoodProvider[] providers = new ForagableFoodProvider[CACHED_REGIONS.length];
+            ForagableFoodRasterizer[] rasterizers = new ForagableFoodRasterizer[CACHED_REGIONS.length];
+
+            for (int squareZ = 0; squareZ < SQUARES_PER_SIDE; squareZ++) {
+                for (int squareX = 0; squareX < SQUARES_PER_SIDE; squareX++) {
+                    ForagingFixture fixture = new ForagingFixture((squareX - SQUARES_PER_SIDE / 2) * CHUNKS_PER_SQUARE,
+                            (squareZ - SQUARES_PER_SIDE / 2) * CHUNKS_PER_SQUARE, CHUNKS_PER_SQUARE);
+                    StandIns.WriteLog expected = fixture.generateAll(density);
+
+                    for (int i = 0; i < CACHED_REGIONS.length; i++) {
+                        if (providers[i] == null) {
+                            providers[i] = ForagingFixture.provider(density, CACHED_REGIONS[i]);
+                            rasterizers[i] = fixture.rasterizer();
+                        }
+                        ForagableFoodProvider provider = providers[i];
+                        ForagableFoodRasterizer rasterizer = rasterizers[i];
+                        for (int round = 0; round < ROUNDS; round++) {
+                            StandIns.WriteLog actual = pool.submit(() -> IntStream.range(0, fixture.size()).parallel()
+                                    .mapToObj(index -> generate(fixture, provider, rasterizer, index, density))
+                                    .reduce(new StandIns.WriteLog(), ForagingParallelGenerationTest::merge)).get();
+
+                            String context = "density " + density + ", square (" + squareX + ", " + squareZ + "), "
+                                    + CACHED_REGIONS[i] + " cached regions, round " + round;
+                            assertEquals(expected.getCount(), actual.getCount(), context);
+                            assertEquals(expected.getHash(), actual.getHash(), context);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static StandIns.WriteLog generate(ForagingFixture fixture, ForagableFoodProvider provider,
+                                              ForagableFoodRasterizer rasterizer, int index, float density) {
+        ForagableFoodProvider.ForagableFoodDensityConfiguration configuration =
+                new ForagableFoodProvider.ForagableFoodDensityConfiguration();
+        configuration.density = density;
+        provider.setConfiguration(configuration);
+
+        StandIns.WriteLog log = new StandIns.WriteLog();
+        fixture.rasterize(rasterizer, index, fixture.process(provider, index), log);
+        return log;
+    }
+
+    private static StandIns.WriteLog merge(StandIns.WriteLog first, StandIns.WriteLog second) {
+        StandIns.WriteLog result = new StandIns.WriteLog();
+        result.merge(first);
+        result.merge(second);
+        return result;
+    }
+}
@@ -0,0 +1,53 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the provider and rasterizer against {@link ReferencePlacement}, the same check the benchmarks run before
+ * measuring, so that a change to placement shows up in the regular build as well.
+ */
+class ForagingReferenceTest {
+    private static final float[] DENSITIES = {0.05f, 0.4f, 1.0f};
+    private static final int CHUNKS_PER_SIDE = 8;
+
+    @Test
+    void pluginsPlaceWhatTheReferenceRulesPlace() {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        for (float density : DENSITIES) {
+            StandIns.WriteLog expected = ReferencePlacement.generate(fixture, density);
+            StandIns.WriteLog actual = fixture.generateAll(density);
+            assertTrue(expected.getCount() > 0, "density " + density);
+            assertEquals(expected.getCount(), actual.getCount(), "density " + density);
+            assertEquals(expected.getHash(), actual.getHash(), "density " + density);
+        }
+    }
+
+    @Test
+    void previewCachePlacesWhatTheReferenceRulesPlace() {
+        ForagingFixture fixture = new ForagingFixture(CHUNKS_PER_SIDE);
+        ForagableFoodProvider provider = ForagingFixture.provider(DENSITIES[0], fixture.size());
+        ForagableFoodRasterizer rasterizer = fixture.rasterizer();
+        for (int i = 0; i < fixture.size(); i++) {
+            fixture.process(provider, i);
+        }
+        // every density after the first is served from the candidate cache
+        for (float density : DENSITIES) {
+            ForagableFoodProvider.ForagableFoodDensityConfiguration configuration =
+                    new ForagableFoodProvider.ForagableFoodDensityConfiguration();
+            configuration.density = density;
+            provider.setConfiguration(configuration);
+            StandIns.WriteLog actual = new StandIns.WriteLog();
+            for (int i = 0; i < fixture.size(); i++) {
+                fixture.rasterize(rasterizer, i, fixture.process(provider, i), actual);
+            }
+            StandIns.WriteLog expected = ReferencePlacement.generate(fixture, density);
+            assertEquals(expected.getCount(), actual.getCount(), "density " + density);
+            assertEquals(expected.getHash(), actual.getHash(), "density " + density);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoissonDiskTileTest {
+    private static final long SEED = 0x5eedL;
+
+    @Test
+    void sameSeedAndSpacingGiveTheSamePoints() {
+        assertEquals(wholeTile(PoissonDiskTile.generate(SEED, 6)), wholeTile(PoissonDiskTile.generate(SEED, 6)));
+        assertNotEquals(wholeTile(PoissonDiskTile.generate(SEED, 6)), wholeTile(PoissonDiskTile.generate(SEED + 1, 6)));
+    }
+
+    @Test
+    void spacingIsClamped() {
+        assertEquals(1, PoissonDiskTile.generate(SEED, 0).getMinSpacing());
+        assertEquals(PoissonDiskTile.MAX_SPACING, PoissonDiskTile.generate(SEED, 1000).getMinSpacing());
+    }
+
+    @Test
+    void spacingHoldsAcrossTileEdges() {
+        for (int spacing : new int[]{3, 8, 20}) {
+            PoissonDiskTile tile = PoissonDiskTile.generate(SEED, spacing);
+            // a region straddling the edges between four copies of the tile, on both sides of the origin
+            List<int[]> points = points(tile, -PoissonDiskTile.SIZE - 40, -40, -PoissonDiskTile.SIZE + 40, 40);
+            points.addAll(points(tile, -40, -40, 40, 40));
+            for (int i = 0; i < points.size(); i++) {
+                for (int j = i + 1; j < points.size(); j++) {
+                    long dx = points.get(i)[0] - points.get(j)[0];
+                    long dz = points.get(i)[1] - points.get(j)[1];
+                    assertTrue(dx * dx + dz * dz >= (long) spacing * spacing,
+                            "spacing " + spacing + " between " + format(points.get(i)) + " and " + format(points.get(j)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void everyColumnIsNearAPoint() {
+        int spacing = 8;
+        PoissonDiskTile tile = PoissonDiskTile.generate(SEED, spacing);
+        List<int[]> points = points(tile, -2 * spacing, -2 * spacing, PoissonDiskTile.SIZE + 2 * spacing,
+                PoissonDiskTile.SIZE + 2 * spacing);
+        // Bridson's algorithm only stops once no point within twice the spacing of an existing one fits anymore
+        for (int z = 0; z < PoissonDiskTile.SIZE; z++) {
+            for (int x = 0; x < PoissonDiskTile.SIZE; x++) {
+                boolean near = false;
+                for (int[] point : points) {
+                    int dx = point[0] - x;
+                    int dz = point[1] - z;
+                    if (dx * dx + dz * dz <= 4 * spacing * spacing) {
+                        near = true;
+                        break;
+                    }
+                }
+                assertTrue(near, "column " + x + ", " + z);
+            }
+        }
+    }
+
+    @Test
+    void regionsSeeEachPointOnceAndOnlyInside() {
+        PoissonDiskTile tile = PoissonDiskTile.generate(SEED, 5);
+        List<int[]> whole = points(tile, 0, 0, PoissonDiskTile.SIZE - 1, PoissonDiskTile.SIZE - 1);
+        assertEquals(tile.size(), whole.size());
+        assertEquals(tile.size(), keys(whole, 0, 0).size());
+
+        // the pattern repeats every tile, also towards negative coordinates
+        Set<Long> shifted = keys(points(tile, -PoissonDiskTile.SIZE, PoissonDiskTile.SIZE, -1, 2 * PoissonDiskTile.SIZE - 1),
+                PoissonDiskTile.SIZE, -PoissonDiskTile.SIZE);
+        assertEquals(keys(whole, 0, 0), shifted);
+
+        // regions not aligned to buckets only get the points inside them
+        int minX = -37;
+        int minZ = 101;
+        int maxX = 50;
+        int maxZ = 133;
+        Set<Long> expected = new HashSet<>();
+        for (int[] point : points(tile, minX - PoissonDiskTile.SIZE, minZ - PoissonDiskTile.SIZE,
+                maxX + PoissonDiskTile.SIZE, maxZ + PoissonDiskTile.SIZE)) {
+            if (point[0] >= minX && point[0] <= maxX && point[1] >= minZ && point[1] <= maxZ) {
+                expected.add(key(point[0], point[1]));
+            }
+        }
+        List<int[]> inside = points(tile, minX, minZ, maxX, maxZ);
+        assertEquals(expected.size(), inside.size());
+        assertEquals(expected, keys(inside, 0, 0));
+    }
+
+    private static Set<Long> wholeTile(PoissonDiskTile tile) {
+        return keys(points(tile, 0, 0, PoissonDiskTile.SIZE - 1, PoissonDiskTile.SIZE - 1), 0, 0);
+    }
+
+    private static List<int[]> points(PoissonDiskTile tile, int minX, int minZ, int maxX, int maxZ) {
+        List<int[]> points = new ArrayList<>();
+        tile.forEachIn(minX, minZ, maxX, maxZ, (x, z) -> points.add(new int[]{x, z}));
+        return points;
+    }
+
+    private static Set<Long> keys(List<int[]> points, int offsetX, int offsetZ) {
+        Set<Long> keys = new HashSet<>();
+        for (int[] point : points) {
+            keys.add(key(point[0] + offsetX, point[1] + offsetZ));
+        }
+        return keys;
+    }
+
+    private static long key(int x, int z) {
+        return (long) x << 32 | (z & 0xffffffffL);
+    }
+
+    private static String format(int[] point) {
+        return "(" + point[0] + ", " + point[1] + ")";
+    }
+}
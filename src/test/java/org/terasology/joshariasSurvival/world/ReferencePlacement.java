@@ -0,0 +1,64 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.terasology.core.world.generator.facets.BiomeFacet;
+import org.terasology.engine.utilities.procedural.Noise;
+import org.terasology.engine.utilities.procedural.WhiteNoise;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.generation.facets.SurfacesFacet;
+
+/**
+ * The foraging placement rules written out as plainly as possible, position by position, to check the optimized
+ * provider and rasterizer against.
+ * <p>
+ * The topmost surface of every column is a candidate if it is at or above sea level; it is kept if the absolute
+ * density noise at the position is below the density, and gets the type sampled from the biome's table with the
+ * absolute type noise of its column. The block is placed if the terrain is still air there. None of the batching,
+ * caching or packing of the real plugins is repeated here, so any difference points at one of those.
+ */
+final class ReferencePlacement {
+    private ReferencePlacement() {
+    }
+
+    /**
+     * Places the foragable food of every chunk of the fixture, with the fixture's seed and the given density.
+     */
+    static StandIns.WriteLog generate(ForagingFixture fixture, float density) {
+        Noise densityNoise = new WhiteNoise(ForagingFixture.SEED + 1);
+        Noise typeNoise = new WhiteNoise(ForagingFixture.SEED);
+        StandIns.WriteLog log = new StandIns.WriteLog();
+
+        for (int i = 0; i < fixture.size(); i++) {
+            BlockRegion region = fixture.regions[i];
+            SurfacesFacet surfaces = fixture.generatingRegions[i].getRegionFacet(SurfacesFacet.class);
+            BiomeFacet biomes = fixture.generatingRegions[i].getRegionFacet(BiomeFacet.class);
+            for (int z = region.minZ(); z <= region.maxZ(); z++) {
+                for (int x = region.minX(); x <= region.maxX(); x++) {
+                    int top = Integer.MIN_VALUE;
+                    for (int height : surfaces.getWorldColumn(x, z)) {
+                        top = Math.max(top, height);
+                    }
+                    int y = top + 1;
+                    if (top == Integer.MIN_VALUE || y < ForagingFixture.SEA_LEVEL || y < region.minY() || y > region.maxY()) {
+                        continue;
+                    }
+                    if (Math.abs(densityNoise.noise(x, y, z)) >= density) {
+                        continue;
+                    }
+                    int typeId = ForagingFixture.FOOD_TYPES.tableFor(biomes.getWorld(x, z))
+                            .sample(Math.abs(typeNoise.noise(x, z)));
+                    if (typeId == AliasTable.NONE) {
+                        continue;
+                    }
+                    int local = StandIns.index(x - region.minX(), y - region.minY(), z - region.minZ());
+                    if (fixture.terrain[i][local] == ForagingFixture.AIR) {
+                        short block = typeId == ForagingFixture.JOSHABERRY_TYPE ? ForagingFixture.JOSHABERRY : ForagingFixture.ROCK;
+                        log.record(x, y, z, fixture.blocksById[block]);
+                    }
+                }
+            }
+        }
+        return log;
+    }
+}
@@ -0,0 +1,104 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionFileStoreTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void savedChunksAreReadBackByANewStore() throws IOException {
+        RegionFileStore store = new RegionFileStore(directory);
+        store.put(0, 0, 0, new byte[]{1, 2});
+        store.put(-1, 2, -17, new byte[]{3});
+        store.put(15, 1, 15, new byte[0]);
+
+        assertEquals(2, store.save());
+        assertEquals(0, store.save());
+
+        RegionFileStore reopened = new RegionFileStore(directory);
+        assertArrayEquals(new byte[]{1, 2}, reopened.load(0, 0, 0));
+        assertArrayEquals(new byte[]{3}, reopened.load(-1, 2, -17));
+        assertArrayEquals(new byte[0], reopened.load(15, 1, 15));
+        assertNull(reopened.load(1, 0, 0));
+    }
+
+    @Test
+    void onlyChangedRegionsAreWritten() throws IOException {
+        RegionFileStore store = new RegionFileStore(directory);
+        store.put(0, 0, 0, new byte[]{1});
+        store.put(16, 0, 0, new byte[]{2});
+        store.save();
+
+        store.put(0, 0, 0, new byte[]{4});
+        store.put(1, 0, 0, null);
+        assertEquals(1, store.save());
+    }
+
+    @Test
+    void regionsLeaveMemoryOnceUnloadedAndSaved() throws IOException {
+        RegionFileStore store = new RegionFileStore(directory);
+        store.put(0, 0, 0, new byte[]{1});
+        store.load(1, 0, 0);
+        assertTrue(store.isLoaded(1, 0, 0));
+
+        store.unload(0, 0, 0);
+        store.unload(1, 0, 0);
+        assertFalse(store.isLoaded(0, 0, 0));
+        // the change is not saved yet, so the region stays
+        assertEquals(1, store.regionsInMemory());
+
+        store.save();
+        assertEquals(0, store.regionsInMemory());
+        assertArrayEquals(new byte[]{1}, store.load(0, 0, 0));
+        store.unload(0, 0, 0);
+        assertEquals(0, store.regionsInMemory());
+    }
+
+    @Test
+    void writingAChunkKeepsTheOthersOfItsRegion() throws IOException {
+        RegionFileStore store = new RegionFileStore(directory);
+        store.put(0, 0, 0, new byte[]{1});
+        store.put(3, 0, 3, new byte[]{2});
+        store.unload(0, 0, 0);
+        store.unload(3, 0, 3);
+        store.save();
+
+        RegionFileStore reopened = new RegionFileStore(directory);
+        reopened.put(3, 0, 3, new byte[]{5});
+        reopened.save();
+        assertArrayEquals(new byte[]{1}, new RegionFileStore(directory).load(0, 0, 0));
+    }
+
+    @Test
+    void regionsWithoutDataLoseTheirFile() throws IOException {
+        RegionFileStore store = new RegionFileStore(directory);
+        store.put(0, 0, 0, new byte[]{1});
+        store.save();
+        assertEquals(1, fileCount());
+
+        store.put(0, 0, 0, null);
+        store.save();
+        assertEquals(0, fileCount());
+    }
+
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
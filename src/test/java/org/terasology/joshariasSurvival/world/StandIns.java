@@ -0,0 +1,171 @@
+// Copyright 2021 The Terasology Foundation
+// SPDX-License-Identifier: Apache-2.0
+package org.terasology.joshariasSurvival.world;
+
+import org.joml.Vector3ic;
+import org.terasology.engine.world.block.Block;
+import org.terasology.engine.world.block.BlockRegion;
+import org.terasology.engine.world.chunks.Chunk;
+import org.terasology.engine.world.generation.Border3D;
+import org.terasology.engine.world.generation.GeneratingRegion;
+import org.terasology.engine.world.generation.Region;
+import org.terasology.engine.world.generation.WorldFacet;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory replacements for the engine's regions and chunks, so the world-gen plugins can be driven without a running
+ * engine.
+ * <p>
+ * The engine interfaces are large, so the stand-ins are dynamic proxies that implement only the methods the foraging
+ * plugins call and fail loudly on everything else. The proxy dispatch cost is the same for every revision of the
+ * plugins, so relative results stay comparable.
+ */
+final class StandIns {
+    static final int CHUNK_SIZE_X = 32;
+    static final int CHUNK_SIZE_Y = 64;
+    static final int CHUNK_SIZE_Z = 32;
+
+    private StandIns() {
+    }
+
+    /**
+     * A generating region that serves the given facets and collects the ones a provider produces.
+     */
+    @SuppressWarnings("unchecked")
+    static GeneratingRegion generatingRegion(BlockRegion region, Map<Class<? extends WorldFacet>, WorldFacet> facets) {
+        Map<Class<? extends WorldFacet>, WorldFacet> store = new HashMap<>(facets);
+        return proxy(GeneratingRegion.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getRegion":
+                    return region;
+                case "getRegionFacet":
+                    return store.get(args[0]);
+                case "setRegionFacet":
+                    store.put((Class<? extends WorldFacet>) args[0], (WorldFacet) args[1]);
+                    return null;
+                case "getBorderForFacet":
+                    return new Border3D(0, 0, 0);
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    /**
+     * A read-only region as seen by rasterizers.
+     */
+    static Region region(BlockRegion region, Map<Class<? extends WorldFacet>, WorldFacet> facets) {
+        return proxy(Region.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getRegion":
+                    return region;
+                case "getFacet":
+                    return facets.get(args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    /**
+     * A chunk backed by an array of block ids, whose minimum corner lies at the given world position.
+     * <p>
+     * Writes do not modify the terrain; they are folded into the {@link WriteLog} in world coordinates instead. That keeps the terrain
+     * identical across benchmark invocations without having to reset it, and gives a cheap fingerprint of everything a
+     * rasterizer placed.
+     */
+    static Chunk chunk(short[] terrain, Block[] blocksById, WriteLog log, int worldX, int worldY, int worldZ) {
+        return proxy(Chunk.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getBlock":
+                    if (args.length == 1) {
+                        Vector3ic pos = (Vector3ic) args[0];
+                        return blocksById[terrain[index(pos.x(), pos.y(), pos.z())]];
+                    }
+                    return blocksById[terrain[index((Integer) args[0], (Integer) args[1], (Integer) args[2])]];
+                case "setBlock":
+                    if (args.length == 2) {
+                        Vector3ic pos = (Vector3ic) args[0];
+                        log.record(worldX + pos.x(), worldY + pos.y(), worldZ + pos.z(), (Block) args[1]);
+                        return blocksById[terrain[index(pos.x(), pos.y(), pos.z())]];
+                    }
+                    int x = (Integer) args[0];
+                    int y = (Integer) args[1];
+                    int z = (Integer) args[2];
+                    log.record(worldX + x, worldY + y, worldZ + z, (Block) args[3]);
+                    return blocksById[terrain[index(x, y, z)]];
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        });
+    }
+
+    static int index(int x, int y, int z) {
+        return x + CHUNK_SIZE_X * (z + CHUNK_SIZE_Z * y);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return type.getSimpleName() + " stand-in";
+                }
+            }
+            return handler.invoke(method, args);
+        });
+    }
+
+    private interface Handler {
+        Object invoke(Method method, Object[] args);
+    }
+
+    /**
+     * Counts block writes and folds them into a hash that does not depend on the order of the writes.
+     */
+    static final class WriteLog {
+        private long hash;
+        private int count;
+
+        void record(int x, int y, int z, Block block) {
+            long entry = ((long) x & 0xFFFF) | ((long) y & 0xFFFF) << 16 | ((long) z & 0xFFFF) << 32
+                    | ((long) block.getId() & 0xFFFF) << 48;
+            hash += mix(entry);
+            count++;
+        }
+
+        /**
+         * Adds the writes of another log, as if they had been recorded here.
+         */
+        void merge(WriteLog other) {
+            hash += other.hash;
+            count += other.count;
+        }
+
+        long getHash() {
+            return hash;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}